@@ -0,0 +1,117 @@
+// Shared Server-Sent Events connection to /api/events.
+// EventSource cannot send the Authorization header, so the stream is read with fetch.
+// All listeners share one connection; it reconnects with Last-Event-ID after a drop.
+
+const FEED_URL = 'http://localhost:8080/api/events';
+const MAX_BACKOFF_MS = 30000;
+// Events kept for listeners that join an open connection from an earlier position
+const RECENT_SIZE = 1024;
+
+// Listener -> ID of the last event it has seen (null: only events from now on)
+const listeners = new Map();
+const recent = [];
+let controller = null;
+let lastEventId = null;
+
+const dispatch = (id, type, data) => {
+    const eventId = id === null ? null : Number(id);
+    if (eventId !== null) {
+        recent.push({ id: eventId, type, data });
+        if (recent.length > RECENT_SIZE) recent.shift();
+    }
+    listeners.forEach((since, listener) => {
+        if (eventId !== null && since !== null && eventId <= since) return;
+        listener(type, data);
+    });
+};
+
+// Hands a listener joining an open connection what it missed since its position
+const catchUp = (listener, since) => {
+    if (lastEventId === null || Number(lastEventId) <= since) return;
+    if (recent.length === 0 || recent[0].id > since + 1) {
+        listener('resync', { reason: 'replay window exceeded' });
+        return;
+    }
+    recent.filter((event) => event.id > since).forEach((event) => listener(event.type, event.data));
+};
+
+const parseBlock = (block) => {
+    let id = null;
+    let type = 'message';
+    const data = [];
+    for (const line of block.split('\n')) {
+        if (line.startsWith(':')) continue;
+        const sep = line.indexOf(':');
+        const field = sep === -1 ? line : line.slice(0, sep);
+        const value = sep === -1 ? '' : line.slice(sep + 1).replace(/^ /, '');
+        if (field === 'id') id = value;
+        else if (field === 'event') type = value;
+        else if (field === 'data') data.push(value);
+    }
+    return { id, type, data: data.join('\n') };
+};
+
+const connect = async (signal) => {
+    let backoff = 1000;
+    while (!signal.aborted) {
+        try {
+            const headers = { Authorization: `Bearer ${localStorage.getItem('token')}` };
+            if (lastEventId) headers['Last-Event-ID'] = lastEventId;
+
+            const res = await fetch(FEED_URL, { headers, signal });
+            if (!res.ok) throw new Error(`Change feed responded ${res.status}`);
+
+            backoff = 1000;
+            const reader = res.body.pipeThrough(new TextDecoderStream()).getReader();
+            let buffer = '';
+            for (;;) {
+                const { value, done } = await reader.read();
+                if (done) break;
+                buffer += value.replace(/\r\n/g, '\n');
+
+                let end;
+                while ((end = buffer.indexOf('\n\n')) !== -1) {
+                    const event = parseBlock(buffer.slice(0, end));
+                    buffer = buffer.slice(end + 2);
+                    if (event.id) lastEventId = event.id;
+                    if (event.data) dispatch(event.id, event.type, JSON.parse(event.data));
+                }
+            }
+        } catch (err) {
+            if (signal.aborted) return;
+            console.warn('Change feed disconnected', err);
+        }
+        await new Promise((resolve) => setTimeout(resolve, backoff));
+        backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+    }
+};
+
+/**
+ * Registers a listener for change events (called with the event type and its parsed data).
+ * Pass the feedPosition of the snapshot the listener's state came from as `since`; events
+ * after it are replayed and earlier ones are skipped.
+ * Returns a function that removes the listener.
+ */
+export const subscribeChanges = (listener, since = null) => {
+    const position = since === null ? null : Number(since);
+    if (!controller) {
+        // A new connection starts where the listener's state ends; the server replays the rest
+        listeners.set(listener, position);
+        recent.length = 0;
+        lastEventId = position === null ? null : String(position);
+        controller = new AbortController();
+        connect(controller.signal);
+    } else if (position === null) {
+        listeners.set(listener, null);
+    } else {
+        catchUp(listener, position);
+        listeners.set(listener, Math.max(position, Number(lastEventId ?? position)));
+    }
+    return () => {
+        listeners.delete(listener);
+        if (listeners.size === 0 && controller) {
+            controller.abort();
+            controller = null;
+        }
+    };
+};
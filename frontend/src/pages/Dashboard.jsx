@@ -1,10 +1,11 @@
-import { useEffect, useState } from 'react';
+import { useEffect, useRef, useState } from 'react';
 import { useNavigate } from 'react-router-dom';
 import {
     LogOut, Play, RefreshCw, Box, ArrowRight, Truck, Plus,
     Warehouse, Package, PieChart, Database, Users
 } from 'lucide-react';
 import api from '../api';
+import { subscribeChanges } from '../changeFeed';
 import WarehouseChart from './WarehouseChart';
 
 // Допоміжна функція для декодування JWT і отримання ролі
@@ -54,29 +55,87 @@ export default function Dashboard() {
         setUserRole(role);
     }, []);
 
+    // Section versions of the last snapshot; unchanged sections come back without data
+    const sectionVersions = useRef({});
+
     const fetchAllData = async () => {
         try {
-            // All these requests are now allowed for STOREKEEPER on backend
-            const resShipments = await api.get('/v1/distribution/shipments');
-            setShipments(Array.isArray(resShipments.data) ? resShipments.data : []);
-
-            const resWh = await api.get('/admin/warehouses');
-            setWarehousesList(Array.isArray(resWh.data) ? resWh.data : []);
-
-            const resProd = await api.get('/admin/products');
-            setProductsList(Array.isArray(resProd.data) ? resProd.data : []);
-
-            const resSup = await api.get('/admin/supplies');
-            setSuppliesList(Array.isArray(resSup.data) ? resSup.data : []);
+            // One consistent read of every section instead of four list calls
+            const res = await api.get('/dashboard/snapshot', {
+                params: { known: Object.values(sectionVersions.current).join(',') || undefined }
+            });
+            const sections = res.data?.sections ?? {};
+            const apply = (name, setter) => {
+                const section = sections[name];
+                if (!section || section.data === undefined) return;
+                sectionVersions.current[name] = section.version;
+                setter(Array.isArray(section.data.items) ? section.data.items : []);
+            };
+            apply('shipments', setShipments);
+            apply('warehouses', setWarehousesList);
+            apply('products', setProductsList);
+            apply('supplies', setSuppliesList);
+            return res.data?.feedPosition ?? null;
         } catch (err) {
             console.error("Failed to fetch data", err);
+            return null;
         }
     };
 
+    // Load the snapshot, then follow the change feed from the snapshot's position, so
+    // events committed while it was read are replayed onto it instead of lost
     useEffect(() => {
-        fetchAllData();
-        const interval = setInterval(fetchAllData, 3000);
-        return () => clearInterval(interval);
+        let active = true;
+        let unsubscribe = () => {};
+
+        const onChange = (type, data) => {
+            switch (type) {
+                case 'shipment.created':
+                    setShipments(prev => [data, ...prev.filter(s => s.id !== data.id)]);
+                    break;
+                case 'shipment.items_added':
+                    setShipments(prev => prev.map(s => s.id === data.id ? { ...s, items: [...s.items, ...data.items] } : s));
+                    break;
+                case 'shipment.status_changed':
+                    setShipments(prev => prev.map(s => s.id === data.id ? { ...s, status: data.status } : s));
+                    break;
+                case 'shipment.deleted':
+                    setShipments(prev => prev.filter(s => !data.ids.includes(s.id)));
+                    break;
+                case 'supply.created':
+                    setSuppliesList(prev => [data, ...prev]);
+                    break;
+                case 'supply.processed':
+                    setSuppliesList(prev => prev.map(s => s.id === data.id ? { ...s, status: data.status } : s));
+                    break;
+                case 'warehouse.created':
+                    setWarehousesList(prev => [...prev, data]);
+                    break;
+                case 'product.created':
+                    setProductsList(prev => [...prev, data]);
+                    break;
+                case 'resync':
+                    sectionVersions.current = {};
+                    load();
+                    break;
+                default:
+                    break;
+            }
+        };
+
+        const load = async () => {
+            unsubscribe();
+            unsubscribe = () => {};
+            const position = await fetchAllData();
+            if (!active) return;
+            unsubscribe = subscribeChanges(onChange, position);
+        };
+
+        load();
+        return () => {
+            active = false;
+            unsubscribe();
+        };
     }, []);
 
     // createSupply, createWarehouse, handleCalculate functions
@@ -98,7 +157,6 @@ export default function Dashboard() {
             if (newId !== 'unknown') setSupplyId(newId);
 
             setNewSupplyWhId(''); setNewSupplyProdId(''); setNewSupplyQty('');
-            fetchAllData();
         } catch (e) {
             console.error(e);
             alert('Error creating supply. Check console/network.');
@@ -110,7 +168,6 @@ export default function Dashboard() {
             await api.post('/admin/warehouses', { capacity: parseFloat(newWhCapacity) });
             alert('Warehouse Created!');
             setNewWhCapacity('');
-            fetchAllData();
         } catch (e) { alert('Error creating warehouse'); }
     };
 
@@ -119,24 +176,41 @@ export default function Dashboard() {
             await api.post('/admin/products', { volume: parseFloat(newProdVolume) });
             alert('Product Created!');
             setNewProdVolume('');
-            fetchAllData();
         } catch (e) { alert('Error creating product'); }
     };
+    // Long-polls the job until the plan is applied; the new shipments themselves arrive over the change feed
+    const waitForCalculation = async (requestId) => {
+        for (let attempt = 0; attempt < 10; attempt++) {
+            const { data } = await api.get(`/v1/distribution/calculate/${requestId}`, { params: { wait: '30s' } });
+            if (data.status === 'DONE' || data.status === 'FAILED') return data;
+        }
+        return null;
+    };
+
     const handleCalculate = async () => {
         setLoading(true);
+        let requestId;
         try {
-            await api.post('/v1/distribution/calculate', { supplyId: parseInt(supplyId) });
+            const res = await api.post('/v1/distribution/calculate', { supplyId: parseInt(supplyId) });
+            requestId = res.data.request_id;
         } catch (err) {
             alert('Error: You do not have permission to run the algorithm.');
+            setLoading(false);
+            return;
+        }
+        try {
+            const result = await waitForCalculation(requestId);
+            if (result?.status === 'FAILED') alert(`Calculation ${requestId} failed. Check service logs.`);
+        } catch (err) {
+            console.error(err);
         } finally {
-            setTimeout(() => setLoading(false), 1000);
+            setLoading(false);
         }
     };
 
     const handleStatusUpdate = async (id, newStatus) => {
         try {
             await api.put(`/inventory/shipments/${id}/status?status=${newStatus}`);
-            fetchAllData();
         } catch (err) {
             console.error(err);
             alert("Failed to update status. Check console.");
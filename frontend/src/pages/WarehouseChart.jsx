@@ -1,5 +1,6 @@
 import React, { useEffect, useState } from 'react';
 import { PieChart, Pie, Cell, Tooltip, Legend, ResponsiveContainer } from 'recharts';
+import { subscribeChanges } from '../changeFeed';
 
 const COLORS = ['#00C49F', '#FF8042']; // Green (free), Orange (used)
 
@@ -15,6 +16,16 @@ const WarehouseChart = () => {
             .then(res => res.json())
             .then(data => setData(data))
             .catch(err => console.error(err));
+
+        // capacity.changed carries the fresh stats of the warehouses that changed
+        return subscribeChanges((type, changed) => {
+            if (type !== 'capacity.changed') return;
+            setData(prev => {
+                const byName = new Map(prev.map(wh => [wh.name, wh]));
+                changed.forEach(wh => byName.set(wh.name, wh));
+                return Array.from(byName.values());
+            });
+        });
     }, []);
 
     if (!data.length) return <div>Loading charts...</div>;
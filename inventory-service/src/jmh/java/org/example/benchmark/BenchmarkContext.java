@@ -0,0 +1,85 @@
+package org.example.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.example.InventoryApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the application against an embedded PostgreSQL with the Liquibase schema applied
+ * and the gRPC server disabled. The write path relies on PostgreSQL arrays, sequences and
+ * ON CONFLICT, so an emulating in-memory database would not run it. RabbitMQ is only
+ * contacted lazily, so no broker is needed. One database and context per benchmark fork.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * @param applicationArgs further {@code --name=value} application properties
+     */
+    static ConfigurableApplicationContext start(String... applicationArgs) {
+        EmbeddedPostgres postgres;
+        try {
+            postgres = EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start embedded PostgreSQL", e);
+        }
+
+        // Passed as arguments so that they take precedence over application.yaml
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--spring.jpa.show-sql=false",
+                "--server.port=0",
+                "--grpc.server.port=-1",
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(applicationArgs));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(InventoryApplication.class)
+                .run(args.toArray(String[]::new));
+
+        context.addApplicationListener((ContextClosedEvent event) -> {
+            try {
+                postgres.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return context;
+    }
+
+    /**
+     * @return IDs of the created warehouses
+     */
+    static List<Long> insertWarehouses(ConfigurableApplicationContext context, int count, double capacity) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{capacity});
+        }
+        jdbc.batchUpdate("INSERT INTO warehouses (total_capacity, created_by) VALUES (?, 'benchmark')", rows);
+        return jdbc.queryForList("SELECT id FROM warehouses ORDER BY id", Long.class);
+    }
+
+    /**
+     * @return IDs of the created products
+     */
+    static List<Long> insertProducts(ConfigurableApplicationContext context, int count) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{0.01 + (i % 100) / 1000.0});
+        }
+        jdbc.batchUpdate("INSERT INTO products (volume_m3, created_by) VALUES (?, 'benchmark')", rows);
+        return jdbc.queryForList("SELECT id FROM products ORDER BY id", Long.class);
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.config.CalculationRequestedMessageConverter;
+import org.example.config.RabbitMQConfig;
+import org.example.dto.DistributionEvent;
+import org.example.dto.SizeClass;
+import org.example.service.OutboxMessageEncoder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a calculation request with the AMQP message converter, JSON against
+ * protobuf. {@code relay} is the outbox relay's path from the stored JSON row to the published
+ * message, which for protobuf adds parsing the row. The {@code wireBytes} counter is the body
+ * bandwidth at that rate; divided by the score it gives bytes per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CalculationEventBenchmark {
+
+    @Param({MessageProperties.CONTENT_TYPE_JSON, CalculationRequestedMessageConverter.CONTENT_TYPE})
+    public String contentType;
+
+    private MessageConverter converter;
+    private OutboxMessageEncoder outboxEncoder;
+    private DistributionEvent event;
+    private String outboxPayload;
+    private Message encoded;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class WireBytes {
+        public long wireBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            wireBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        converter = new RabbitMQConfig().messageConverter();
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        outboxEncoder = new OutboxMessageEncoder(objectMapper, converter, contentType);
+        event = DistributionEvent.builder()
+                .requestId(UUID.randomUUID().toString())
+                .supplyId(1_234_567L)
+                .sourceWarehouseId(4_321L)
+                .initiatedByUserId(42L)
+                .initiatedByUsername("logistician.kyiv")
+                .sizeClass(SizeClass.SMALL)
+                .build();
+        // Stored the way EventPublisher writes the outbox row
+        outboxPayload = objectMapper.writeValueAsString(event);
+        encoded = encode(new WireBytes());
+    }
+
+    @Benchmark
+    public Message encode(WireBytes counter) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(contentType);
+        Message message = converter.toMessage(event, properties);
+        counter.wireBytes += message.getBody().length;
+        return message;
+    }
+
+    @Benchmark
+    public Message relay(WireBytes counter) throws JsonProcessingException {
+        Message message = outboxEncoder.toMessage(event.getRequestId(), outboxPayload);
+        counter.wireBytes += message.getBody().length;
+        return message;
+    }
+
+    @Benchmark
+    public Object decode() {
+        return converter.fromMessage(encoded);
+    }
+}
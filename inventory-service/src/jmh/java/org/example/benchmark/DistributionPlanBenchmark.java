@@ -0,0 +1,81 @@
+package org.example.benchmark;
+
+import org.example.grpc.DistributionPlan;
+import org.example.service.DistributionService;
+import org.example.service.ShardedPlanApplier;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of applying one plan: claim, reference validation, set-based shipment inserts and
+ * the ledger and change feed updates. {@code sequential} is the single transaction of
+ * {@link DistributionService#applyDistributionPlan}; {@code sharded} is
+ * {@link ShardedPlanApplier}, one transaction per destination partition on the default
+ * four partitions. The written shipments are removed after every iteration so the tables
+ * do not grow. Sample time reports the p99 of single applies next to the average and
+ * the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DistributionPlanBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int moves;
+
+    @Param({"sequential", "sharded"})
+    public String path;
+
+    private ConfigurableApplicationContext context;
+    private DistributionService distributionService;
+    private ShardedPlanApplier shardedPlanApplier;
+    private JdbcTemplate jdbc;
+    private DistributionPlan template;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Every plan takes the sharded path when it is the one measured
+        context = BenchmarkContext.start(
+                "--inventory.plan-apply.sharded.enabled=" + path.equals("sharded"),
+                "--inventory.plan-apply.sharded.min-moves=1");
+        distributionService = context.getBean(DistributionService.class);
+        shardedPlanApplier = context.getBean(ShardedPlanApplier.class);
+        jdbc = context.getBean(JdbcTemplate.class);
+
+        List<Long> warehouseIds = BenchmarkContext.insertWarehouses(context, 50, 1_000_000);
+        List<Long> productIds = BenchmarkContext.insertProducts(context, 500);
+        template = PlanFixtures.plan("template", warehouseIds.get(0), moves, warehouseIds, productIds);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearShipments() {
+        jdbc.update("DELETE FROM shipment_items");
+        jdbc.update("DELETE FROM shipments");
+        jdbc.update("DELETE FROM plan_applications");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void applyDistributionPlan() {
+        DistributionPlan plan = template.toBuilder()
+                .setRequestId("bench-" + moves + "-" + sequence++)
+                .build();
+        if (shardedPlanApplier.shouldApply(plan)) {
+            shardedPlanApplier.apply(plan, null);
+        } else {
+            distributionService.applyDistributionPlan(plan, null);
+        }
+    }
+}
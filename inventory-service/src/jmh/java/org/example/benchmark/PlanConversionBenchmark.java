@@ -0,0 +1,40 @@
+package org.example.benchmark;
+
+import org.example.grpc.DistributionPlan;
+import org.example.service.PlanMoves;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Decoding a {@link DistributionPlan} from the wire and converting its moves into
+ * shipment rows, without any database work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PlanConversionBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int moves;
+
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Long> warehouseIds = LongStream.rangeClosed(1, 50).boxed().toList();
+        List<Long> productIds = LongStream.rangeClosed(1, 500).boxed().toList();
+        payload = PlanFixtures.plan("conversion", 1, moves, warehouseIds, productIds).toByteArray();
+    }
+
+    @Benchmark
+    public PlanMoves parseAndConvert() throws Exception {
+        DistributionPlan plan = DistributionPlan.parseFrom(payload);
+        return PlanMoves.parse(plan.getSourceId(), plan.getMovesList());
+    }
+}
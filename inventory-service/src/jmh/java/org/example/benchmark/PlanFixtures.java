@@ -0,0 +1,36 @@
+package org.example.benchmark;
+
+import org.example.grpc.DistributionPlan;
+import org.example.grpc.Move;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Plans shaped like the engine's output: moves spread over the given warehouses and
+ * products with a fixed seed, so every run measures the same input. No unallocated
+ * items, since each one is logged at error level.
+ */
+final class PlanFixtures {
+
+    private PlanFixtures() {
+    }
+
+    static DistributionPlan plan(String requestId, long sourceId, int moves,
+                                 List<Long> warehouseIds, List<Long> productIds) {
+        SplittableRandom random = new SplittableRandom(42);
+        DistributionPlan.Builder plan = DistributionPlan.newBuilder()
+                .setRequestId(requestId)
+                .setSourceId(sourceId)
+                .setGeneratedAt(System.currentTimeMillis());
+
+        for (int i = 0; i < moves; i++) {
+            plan.addMoves(Move.newBuilder()
+                    .setWarehouseId(String.valueOf(warehouseIds.get(random.nextInt(warehouseIds.size()))))
+                    .setProductId(String.valueOf(productIds.get(random.nextInt(productIds.size()))))
+                    .setQuantity(1 + random.nextInt(50))
+                    .setVolumeM3(0.05));
+        }
+        return plan.build();
+    }
+}
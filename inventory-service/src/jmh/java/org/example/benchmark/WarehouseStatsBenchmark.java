@@ -0,0 +1,48 @@
+package org.example.benchmark;
+
+import org.example.controller.AdminController;
+import org.example.dto.WarehouseStatDto;
+import org.example.service.CapacityLedger;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AdminController#getWarehouseStats} with the capacity ledger seeded for the
+ * given number of warehouses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WarehouseStatsBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int warehouses;
+
+    private ConfigurableApplicationContext context;
+    private AdminController adminController;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        adminController = context.getBean(AdminController.class);
+        BenchmarkContext.insertWarehouses(context, warehouses, 1000);
+        context.getBean(CapacityLedger.class).reconcile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<List<WarehouseStatDto>> getWarehouseStats() {
+        return adminController.getWarehouseStats();
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.config;
+
+import org.example.dto.SizeClass;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Size classes of calculation requests and their queue lanes. A supply is SMALL when both
+ * its unit count and volume are within the small limits, LARGE when either reaches the
+ * large limit, and MEDIUM otherwise.
+ * <p>
+ * With lanes enabled every partition has a {@code .small} and a {@code .large} queue next to
+ * its existing one, which takes MEDIUM. Consumers split their workers over the lanes by
+ * weight, so each lane keeps its share of the engine however deep the others are. With
+ * lanes disabled (the default, until the engine consumes them) every class goes to the
+ * existing queue and the class only travels in the message.
+ */
+@Component
+public class CalculationLanes {
+
+    private final boolean enabled;
+    private final long smallMaxUnits;
+    private final double smallMaxVolumeM3;
+    private final long largeMinUnits;
+    private final double largeMinVolumeM3;
+
+    public CalculationLanes(@Value("${inventory.calculation.lanes.enabled:false}") boolean enabled,
+                            @Value("${inventory.calculation.lanes.small-max-units:100}") long smallMaxUnits,
+                            @Value("${inventory.calculation.lanes.small-max-volume-m3:10}") double smallMaxVolumeM3,
+                            @Value("${inventory.calculation.lanes.large-min-units:10000}") long largeMinUnits,
+                            @Value("${inventory.calculation.lanes.large-min-volume-m3:1000}") double largeMinVolumeM3) {
+        if (smallMaxUnits >= largeMinUnits || smallMaxVolumeM3 >= largeMinVolumeM3) {
+            throw new RuntimeException("inventory.calculation.lanes small limits must be below the large ones");
+        }
+        this.enabled = enabled;
+        this.smallMaxUnits = smallMaxUnits;
+        this.smallMaxVolumeM3 = smallMaxVolumeM3;
+        this.largeMinUnits = largeMinUnits;
+        this.largeMinVolumeM3 = largeMinVolumeM3;
+    }
+
+    public SizeClass classify(long units, double volumeM3) {
+        if (units >= largeMinUnits || volumeM3 >= largeMinVolumeM3) {
+            return SizeClass.LARGE;
+        }
+        if (units <= smallMaxUnits && volumeM3 <= smallMaxVolumeM3) {
+            return SizeClass.SMALL;
+        }
+        return SizeClass.MEDIUM;
+    }
+
+    /**
+     * The lanes each partition has, MEDIUM first.
+     */
+    public List<SizeClass> lanes() {
+        return enabled ? List.of(SizeClass.MEDIUM, SizeClass.SMALL, SizeClass.LARGE) : List.of(SizeClass.MEDIUM);
+    }
+
+    /**
+     * Appended to a partition's queue name and routing key; empty for MEDIUM, which keeps
+     * the existing names, and for every class while lanes are disabled.
+     */
+    public String suffix(SizeClass sizeClass) {
+        if (!enabled || sizeClass == null || sizeClass == SizeClass.MEDIUM) {
+            return "";
+        }
+        return "." + sizeClass.name().toLowerCase();
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.config;
+
+import org.example.dto.SizeClass;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Splits calculation requests over {@code inventory.calculation.partitions} queues by source
+ * warehouse, so requests for one hub stay in order on one queue while different hubs are
+ * calculated in parallel. Partition 0 keeps the original queue and routing key; partition
+ * {@code i} adds {@code .i} to both, so a single partition is exactly the old topology.
+ * <p>
+ * Hubs are assigned with jump consistent hashing. Raising the count from N to M moves only
+ * (M - N) / M of the hubs, all of them to the new partitions; the rest keep their queue.
+ * A moved hub can have requests queued on both its old and new partition for a moment, so
+ * when that ordering matters raise the count while the depth gauges are near zero. When
+ * lowering it, the dropped queues keep their bindings but receive nothing new; consume them
+ * until empty before deleting them.
+ * <p>
+ * Each partition is further split into size class lanes, see {@link CalculationLanes}.
+ */
+@Component
+public class CalculationPartitions {
+
+    private final int count;
+    private final CalculationLanes lanes;
+
+    public CalculationPartitions(@Value("${inventory.calculation.partitions:1}") int count, CalculationLanes lanes) {
+        if (count < 1) {
+            throw new RuntimeException("inventory.calculation.partitions must be at least 1, got " + count);
+        }
+        this.count = count;
+        this.lanes = lanes;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public List<SizeClass> lanes() {
+        return lanes.lanes();
+    }
+
+    /**
+     * Requests without a source warehouse go to partition 0.
+     */
+    public int partitionOf(Long sourceWarehouseId) {
+        return sourceWarehouseId != null ? jumpHash(sourceWarehouseId, count) : 0;
+    }
+
+    public String routingKey(Long sourceWarehouseId, SizeClass sizeClass) {
+        return routingKey(partitionOf(sourceWarehouseId), sizeClass);
+    }
+
+    public String routingKey(int partition, SizeClass sizeClass) {
+        return name(RabbitMQConfig.ROUTING_KEY, partition, sizeClass);
+    }
+
+    public String queueName(int partition, SizeClass sizeClass) {
+        return name(RabbitMQConfig.QUEUE_NAME, partition, sizeClass);
+    }
+
+    /**
+     * Every lane of every partition.
+     */
+    public List<String> queueNames() {
+        return IntStream.range(0, count)
+                .boxed()
+                .flatMap(partition -> lanes().stream().map(sizeClass -> queueName(partition, sizeClass)))
+                .toList();
+    }
+
+    private String name(String base, int partition, SizeClass sizeClass) {
+        return (partition == 0 ? base : base + "." + partition) + lanes.suffix(sizeClass);
+    }
+
+    // Lamping and Veach, "A Fast, Minimal Memory, Consistent Hash Algorithm"
+    static int jumpHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.config;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.example.dto.DistributionEvent;
+import org.example.dto.SizeClass;
+import org.example.grpc.CalculationRequested;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+/**
+ * Encodes a {@link DistributionEvent} as a protobuf {@link CalculationRequested}: under
+ * half the size of the JSON body, with no field names or type header on the wire.
+ */
+public class CalculationRequestedMessageConverter extends AbstractMessageConverter {
+
+    public static final String CONTENT_TYPE = "application/x-protobuf";
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties) {
+        if (!(object instanceof DistributionEvent event)) {
+            throw new MessageConversionException("Cannot encode " + object.getClass().getName() + " as protobuf");
+        }
+        CalculationRequested.Builder message = CalculationRequested.newBuilder()
+                .setRequestId(event.getRequestId());
+        if (event.getSupplyId() != null) {
+            message.setSupplyId(event.getSupplyId());
+        }
+        if (event.getSourceWarehouseId() != null) {
+            message.setSourceWarehouseId(event.getSourceWarehouseId());
+        }
+        if (event.getInitiatedByUserId() != null) {
+            message.setInitiatedByUserId(event.getInitiatedByUserId());
+        }
+        if (event.getInitiatedByUsername() != null) {
+            message.setInitiatedByUsername(event.getInitiatedByUsername());
+        }
+        if (event.getSizeClass() != null) {
+            message.setSizeClass(CalculationRequested.SizeClass.valueOf(event.getSizeClass().name()));
+        }
+
+        byte[] body = message.build().toByteArray();
+        messageProperties.setContentType(CONTENT_TYPE);
+        messageProperties.setType(CalculationRequested.getDescriptor().getFullName());
+        messageProperties.setContentLength(body.length);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        CalculationRequested request;
+        try {
+            request = CalculationRequested.parseFrom(message.getBody());
+        } catch (InvalidProtocolBufferException e) {
+            throw new MessageConversionException("Unreadable protobuf calculation request", e);
+        }
+        return DistributionEvent.builder()
+                .requestId(request.getRequestId())
+                .supplyId(request.getSupplyId())
+                .sourceWarehouseId(request.getSourceWarehouseId())
+                .initiatedByUserId(request.hasInitiatedByUserId() ? request.getInitiatedByUserId() : null)
+                .initiatedByUsername(request.getInitiatedByUsername())
+                .sizeClass(switch (request.getSizeClass()) {
+                    case SMALL -> SizeClass.SMALL;
+                    case LARGE -> SizeClass.LARGE;
+                    default -> SizeClass.MEDIUM;
+                })
+                .build();
+    }
+}
@@ -51,4 +51,8 @@ public class CustomUserDetails implements UserDetails {
     public Long getId() {
         return user.getId();
     }
+
+    public int getTokenVersion() {
+        return user.getTokenVersion();
+    }
 }
\ No newline at end of file
@@ -21,6 +21,8 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider tokenProvider;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenVersions tokenVersions;
     private final UserDetailsService userDetailsService;
 
     @Override
@@ -31,18 +33,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-
-                String username = tokenProvider.getUsernameFromJWT(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+            if (StringUtils.hasText(jwt)) {
+                UsernamePasswordAuthenticationToken authentication = authenticate(jwt);
+                if (authentication != null) {
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
@@ -51,6 +47,35 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Builds the authentication from the token claims. The signature is checked once per
+     * token and cached; the roles come from the token, and a token version check rejects
+     * tokens issued before the user's roles last changed.
+     */
+    private UsernamePasswordAuthenticationToken authenticate(String jwt) {
+        JwtTokenProvider.VerifiedToken verified = verifiedTokenCache.get(jwt);
+        if (verified == null) {
+            verified = tokenProvider.verify(jwt).orElse(null);
+            if (verified == null) {
+                return null;
+            }
+            verifiedTokenCache.put(jwt, verified);
+        }
+
+        JwtPrincipal principal = verified.principal();
+        if (principal.userId() == null) {
+            // Issued before tokens carried a user ID and version: fall back to the stored roles
+            UserDetails userDetails = userDetailsService.loadUserByUsername(principal.username());
+            return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        }
+
+        if (!tokenVersions.isCurrent(principal.userId(), principal.tokenVersion())) {
+            logger.debug("Rejecting outdated token of user " + principal.username());
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.authorities());
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
@@ -0,0 +1,22 @@
+package org.example.config;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Authenticated user rebuilt from verified token claims, without a database lookup.
+ */
+public record JwtPrincipal(
+        Long userId,
+        String username,
+        int tokenVersion,
+        List<GrantedAuthority> authorities
+) implements Principal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
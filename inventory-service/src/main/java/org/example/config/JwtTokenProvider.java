@@ -2,15 +2,19 @@ package org.example.config;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Component
 public class JwtTokenProvider {
 
@@ -18,8 +22,20 @@ public class JwtTokenProvider {
 
     private static final long JWT_EXPIRATION = 86400000L;
 
+    private static final String ROLES_CLAIM = "roles";
+    private static final String USER_ID_CLAIM = "user_id";
+    private static final String TOKEN_VERSION_CLAIM = "tv";
+
     private final Key key = Keys.hmacShaKeyFor(JWT_SECRET.getBytes());
 
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(key).build();
+
+    /**
+     * @param principal         identity rebuilt from the claims
+     * @param expiresAtMillis   expiry of the token
+     */
+    public record VerifiedToken(JwtPrincipal principal, long expiresAtMillis) {}
+
     public String generateToken(Authentication authentication) {
         String username = authentication.getName();
         Date now = new Date();
@@ -29,33 +45,55 @@ public class JwtTokenProvider {
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.toList());
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(username)
                 .setIssuedAt(new Date())
                 .setExpiration(expiryDate)
 
-                .claim("roles", roles)
+                .claim(ROLES_CLAIM, roles);
 
+        if (authentication.getPrincipal() instanceof CustomUserDetails user) {
+            builder.claim(USER_ID_CLAIM, user.getId())
+                    .claim(TOKEN_VERSION_CLAIM, user.getTokenVersion());
+        }
+
+        return builder
                 .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public String getUsernameFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.getSubject();
-    }
-
-    public boolean validateToken(String authToken) {
+    /**
+     * Verifies the signature and expiry once and rebuilds the principal from the claims.
+     * Tokens issued before user IDs were added carry a null user ID.
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        Claims claims;
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
+            claims = parser.parseClaimsJws(token).getBody();
         } catch (JwtException | IllegalArgumentException ex) {
-            System.err.println("Invalid JWT token: " + ex.getMessage());
+            log.debug("Invalid JWT token: {}", ex.getMessage());
+            return Optional.empty();
+        }
+
+        List<GrantedAuthority> authorities = rolesOf(claims);
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        Number tokenVersion = claims.get(TOKEN_VERSION_CLAIM, Number.class);
+
+        JwtPrincipal principal = new JwtPrincipal(
+                userId != null ? userId.longValue() : null,
+                claims.getSubject(),
+                tokenVersion != null ? tokenVersion.intValue() : 0,
+                authorities);
+        return Optional.of(new VerifiedToken(principal, claims.getExpiration().getTime()));
+    }
+
+    private static List<GrantedAuthority> rolesOf(Claims claims) {
+        Object raw = claims.get(ROLES_CLAIM);
+        if (!(raw instanceof List<?> roles)) {
+            return List.of();
         }
-        return false;
+        return roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(role)))
+                .toList();
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,23 @@
 package org.example.config;
 
-import org.springframework.amqp.core.Binding;
+import org.example.dto.SizeClass;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -23,25 +30,42 @@ public class RabbitMQConfig {
         return new TopicExchange(EXCHANGE_NAME);
     }
 
+    /**
+     * One durable queue per calculation partition and size class lane, each bound with its
+     * own routing key.
+     */
     @Bean
-    public Queue queue() {
-        return new Queue(QUEUE_NAME, true);
-    }
-
-    @Bean
-    public Binding binding(Queue queue, TopicExchange exchange) {
-        return BindingBuilder.bind(queue).to(exchange).with(ROUTING_KEY);
+    public Declarables calculationQueues(CalculationPartitions partitions, TopicExchange exchange) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (int partition = 0; partition < partitions.count(); partition++) {
+            for (SizeClass lane : partitions.lanes()) {
+                Queue queue = new Queue(partitions.queueName(partition, lane), true);
+                declarables.add(queue);
+                declarables.add(BindingBuilder.bind(queue).to(exchange).with(partitions.routingKey(partition, lane)));
+            }
+        }
+        return new Declarables(declarables);
     }
 
+    /**
+     * Picks JSON or protobuf by the message's content type, so consumers and the outbox relay
+     * can switch formats independently during a rollout. Anything else is treated as JSON.
+     */
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter messageConverter() {
+        MessageConverter json = new Jackson2JsonMessageConverter("org.example.dto");
+        ContentTypeDelegatingMessageConverter converter = new ContentTypeDelegatingMessageConverter(json);
+        converter.addDelegate(MessageProperties.CONTENT_TYPE_JSON, json);
+        converter.addDelegate(CalculationRequestedMessageConverter.CONTENT_TYPE, new CalculationRequestedMessageConverter());
+        return converter;
     }
 
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
-        template.setMessageConverter(jsonMessageConverter());
+        template.setMessageConverter(messageConverter());
+        // Unroutable messages come back to the outbox relay instead of being dropped
+        template.setMandatory(true);
         return template;
     }
 }
\ No newline at end of file
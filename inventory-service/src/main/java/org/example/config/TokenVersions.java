@@ -0,0 +1,46 @@
+package org.example.config;
+
+import org.example.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Current token version per user. A token is honoured only while its version matches,
+ * so a role change revokes every token issued before it. Versions are read from
+ * {@code users.token_version} at most once per refresh interval per user; role changes
+ * made through this instance take effect immediately, those made elsewhere after the interval.
+ */
+@Component
+public class TokenVersions {
+
+    private record Entry(int version, long loadedAtMillis) {}
+
+    private final UserRepository userRepository;
+    private final long refreshMs;
+    private final Map<Long, Entry> versions = new ConcurrentHashMap<>();
+
+    public TokenVersions(UserRepository userRepository,
+                         @Value("${inventory.security.token-version-refresh-ms:30000}") long refreshMs) {
+        this.userRepository = userRepository;
+        this.refreshMs = refreshMs;
+    }
+
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        long now = System.currentTimeMillis();
+        Entry entry = versions.get(userId);
+        if (entry == null || now - entry.loadedAtMillis() > refreshMs) {
+            // Unknown users get -1 so that their tokens are rejected
+            int version = userRepository.findTokenVersionById(userId).orElse(-1);
+            entry = new Entry(version, now);
+            versions.put(userId, entry);
+        }
+        return entry.version() == tokenVersion;
+    }
+
+    public void update(Long userId, int version) {
+        versions.put(userId, new Entry(version, System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of tokens whose signature was already checked, so repeat requests with
+ * the same token skip the HMAC verification. Entries are dropped once the token expires.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private final Map<String, JwtTokenProvider.VerifiedToken> verified;
+
+    public VerifiedTokenCache(@Value("${inventory.security.token-cache-size:10000}") int maxSize) {
+        this.verified = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JwtTokenProvider.VerifiedToken> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    public JwtTokenProvider.VerifiedToken get(String token) {
+        JwtTokenProvider.VerifiedToken entry = verified.get(token);
+        if (entry != null && entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            verified.remove(token);
+            return null;
+        }
+        return entry;
+    }
+
+    public void put(String token, JwtTokenProvider.VerifiedToken entry) {
+        verified.put(token, entry);
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.config;
+
+import jakarta.annotation.PreDestroy;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Extends {@code spring.threads.virtual.enabled} to the gRPC server. Spring Boot already
+ * switches Tomcat, the MVC async executor, scheduling and the AMQP listener containers;
+ * RabbitTemplate publishes on the calling thread. With thread pools out of the way the
+ * Hikari pool size is what bounds concurrent database work.
+ * <p>
+ * The gRPC executor is deliberately not a bean: any {@code Executor} bean makes Boot back
+ * off from creating {@code applicationTaskExecutor}, which MVC async requests run on.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    private final ExecutorService grpcExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Bean
+    public GrpcServerConfigurer virtualThreadGrpcServerConfigurer() {
+        return serverBuilder -> serverBuilder.executor(grpcExecutor);
+    }
+
+    @PreDestroy
+    public void closeGrpcExecutor() {
+        grpcExecutor.close();
+    }
+}
@@ -1,17 +1,27 @@
 package org.example.controller;
 
+import jakarta.transaction.Transactional;
+import org.example.config.TokenVersions;
 import org.example.dto.CreateRequest;
+import org.example.dto.PageResponse;
+import org.example.dto.ProductResponse;
 import org.example.dto.RoleUpdateRequest;
+import org.example.dto.SupplyResponse;
+import org.example.dto.WarehouseResponse;
 import org.example.dto.WarehouseStatDto;
 import org.example.entity.*;
 import org.example.repository.*;
+import org.example.service.CapacityLedger;
+import org.example.service.ChangeFeed;
+import org.example.service.DistributionService;
+import org.example.service.SupplyStatusView;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -29,40 +39,21 @@ public class AdminController {
     @Autowired private ShipmentItemRepository shipmentItemRepository;
     @Autowired private UserRepository userRepository;
     @Autowired private RoleRepository roleRepository;
+    @Autowired private CapacityLedger capacityLedger;
+    @Autowired private DistributionService distributionService;
+    @Autowired private ChangeFeed changeFeed;
+    @Autowired private TokenVersions tokenVersions;
+    @Autowired private SupplyStatusView supplyStatusView;
 
     @GetMapping("/warehouses/stats")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN', 'STOREKEEPER')")
     public ResponseEntity<List<WarehouseStatDto>> getWarehouseStats() {
-        List<Warehouse> warehouses = warehouseRepository.findAll();
-        List<WarehouseStatDto> stats = new ArrayList<>();
-
-        for (Warehouse w : warehouses) {
-            double allocatedVolume = shipmentItemRepository.calculateUsedVolumeByWarehouse(w.getId());
-
-            double pendingVolume = supplyItemRepository.calculatePendingVolumeByWarehouse(w.getId());
-
-            double totalUsed = allocatedVolume + pendingVolume;
-
-            double total = w.getTotalCapacity();
-            double free = total - totalUsed;
-            if (free < 0) free = 0;
-
-            double percentage = (total > 0) ? (totalUsed / total) * 100 : 0;
-
-            stats.add(WarehouseStatDto.builder()
-                    .name("WH-" + w.getId())
-                    .totalCapacity(total)
-                    .usedCapacity(totalUsed)
-                    .freeCapacity(free)
-                    .utilizationPercentage(percentage)
-                    .build());
-        }
-
-        return ResponseEntity.ok(stats);
+        return ResponseEntity.ok(capacityLedger.getWarehouseStats());
     }
 
     @PostMapping("/supplies")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN')")
+    @Transactional
     public ResponseEntity<?> createSupply(@RequestBody CreateRequest.Supply request) {
         Supply supply = new Supply();
         supply.setWarehouseId(request.warehouseId());
@@ -80,16 +71,29 @@ public class AdminController {
 
         supplyItemRepository.save(item);
 
+        double volumePerUnit = productRepository.findById(request.productId())
+                .map(Product::getVolumeM3)
+                .orElse(0.0);
+        capacityLedger.recordSupplyReceived(supply.getWarehouseId(), volumePerUnit * request.quantity());
+        supplyStatusView.recordReceived(supply.getId(), supply.getWarehouseId(), request.quantity(),
+                volumePerUnit * request.quantity());
+        changeFeed.publish(ChangeFeed.Type.SUPPLY_CREATED, new SupplyResponse(supply.getId(), supply.getWarehouseId(),
+                supply.getStatus(), supply.getArrivalDate(), supply.getCreatedBy(), supply.getCreatedAt()));
+
         return ResponseEntity.ok("Supply created with ID: " + supply.getId());
     }
 
     @PostMapping("/warehouses")
     @PreAuthorize("hasRole('ADMIN')")
+    @Transactional
     public ResponseEntity<?> createWarehouse(@RequestBody CreateRequest.Warehouse request) {
         Warehouse w = new Warehouse();
         w.setTotalCapacity(request.capacity());
         w.setCreatedBy(getCurrentUsername());
         warehouseRepository.save(w);
+        capacityLedger.recordWarehouse(w.getId(), w.getTotalCapacity());
+        changeFeed.publish(ChangeFeed.Type.WAREHOUSE_CREATED,
+                new WarehouseResponse(w.getId(), w.getTotalCapacity(), w.getCreatedBy(), w.getCreatedAt()));
         return ResponseEntity.ok("Warehouse created with ID: " + w.getId());
     }
 
@@ -100,27 +104,51 @@ public class AdminController {
         p.setVolumeM3(request.volume());
         p.setCreatedBy(getCurrentUsername());
         productRepository.save(p);
+        changeFeed.publish(ChangeFeed.Type.PRODUCT_CREATED,
+                new ProductResponse(p.getId(), p.getVolumeM3(), p.getCreatedBy(), p.getCreatedAt()));
         return ResponseEntity.ok("Product created with ID: " + p.getId());
     }
 
     @GetMapping("/warehouses")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN', 'STOREKEEPER')")
-    public ResponseEntity<List<Warehouse>> getAllWarehouses() {
-        return ResponseEntity.ok(warehouseRepository.findAll());
+    public ResponseEntity<PageResponse<WarehouseResponse>> getAllWarehouses(
+            @RequestParam(name = "after_id", required = false) Long afterId,
+            @RequestParam(required = false) Integer limit) {
+        int pageSize = PageResponse.clampLimit(limit);
+        List<WarehouseResponse> warehouses = warehouseRepository.findPage(afterId, PageRequest.ofSize(pageSize));
+        return ResponseEntity.ok(PageResponse.of(warehouses, pageSize, WarehouseResponse::id));
     }
 
     @GetMapping("/products")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN', 'STOREKEEPER')")
-    public ResponseEntity<List<Product>> getAllProducts() {
-        return ResponseEntity.ok(productRepository.findAll());
+    public ResponseEntity<PageResponse<ProductResponse>> getAllProducts(
+            @RequestParam(name = "after_id", required = false) Long afterId,
+            @RequestParam(required = false) Integer limit) {
+        int pageSize = PageResponse.clampLimit(limit);
+        List<ProductResponse> products = productRepository.findPage(afterId, PageRequest.ofSize(pageSize));
+        return ResponseEntity.ok(PageResponse.of(products, pageSize, ProductResponse::id));
     }
 
+    /**
+     * Newest supplies first. Pass the returned next_after_id as after_id for the next page.
+     */
     @GetMapping("/supplies")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN', 'STOREKEEPER')")
-    public ResponseEntity<List<Supply>> getAllSupplies() {
-        List<Supply> supplies = supplyRepository.findAll();
-        supplies.sort((a, b) -> b.getId().compareTo(a.getId()));
-        return ResponseEntity.ok(supplies);
+    public ResponseEntity<PageResponse<SupplyResponse>> getAllSupplies(
+            @RequestParam(name = "after_id", required = false) Long afterId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) SupplyStatus status,
+            @RequestParam(required = false) Long warehouse) {
+        int pageSize = PageResponse.clampLimit(limit);
+        List<SupplyResponse> supplies = supplyRepository.findPage(afterId, status, warehouse, PageRequest.ofSize(pageSize));
+        return ResponseEntity.ok(PageResponse.of(supplies, pageSize, SupplyResponse::id));
+    }
+
+    @PostMapping("/maintenance/shipments/compact")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> compactShipments() {
+        ShipmentJdbcRepository.Compaction compaction = distributionService.compactPlanShipments();
+        return ResponseEntity.ok("Compaction removed " + compaction.removedIds().length + " shipments");
     }
 
     private String getCurrentUsername() {
@@ -146,8 +174,11 @@ public class AdminController {
         Set<Role> roles = new HashSet<>();
         roles.add(role);
         user.setRoles(roles);
+        // Revokes the tokens issued with the old roles
+        user.setTokenVersion(user.getTokenVersion() + 1);
 
         userRepository.save(user);
+        tokenVersions.update(user.getId(), user.getTokenVersion());
         return ResponseEntity.ok("User role updated to " + request.roleName());
     }
 }
\ No newline at end of file
@@ -9,17 +9,21 @@ import org.example.entity.Role;
 import org.example.entity.User;
 import org.example.repository.RoleRepository;
 import org.example.repository.UserRepository;
+import org.example.service.PasswordHashingExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -31,28 +35,42 @@ public class AuthController {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
+    /**
+     * Password verification runs on the hashing pool; the request thread is released meanwhile.
+     */
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@RequestBody AuthRequest request) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())
-        );
-
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String token = tokenProvider.generateToken(authentication);
-
-        return ResponseEntity.ok(new AuthResponse(token));
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@RequestBody AuthRequest request) {
+        return passwordHashingExecutor.submit(() -> {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())
+            );
+            return ResponseEntity.ok(new AuthResponse(tokenProvider.generateToken(authentication)));
+        });
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody CreateRequest.UserRegister request) {
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody CreateRequest.UserRegister request) {
         if (userRepository.findByUsername(request.username()).isPresent()) {
-            return ResponseEntity.badRequest().body("Username is already taken!");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Username is already taken!"));
         }
 
+        return passwordHashingExecutor.submit(() -> passwordEncoder.encode(request.password()))
+                .thenApply(passwordHash -> saveUser(request, passwordHash));
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> handleHashingOverload(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(passwordHashingExecutor.getRetryAfterSeconds()))
+                .body("Too many sign-in attempts in progress, please retry shortly");
+    }
+
+    private ResponseEntity<?> saveUser(CreateRequest.UserRegister request, String passwordHash) {
         User user = new User();
         user.setUsername(request.username());
-        user.setPassword(passwordEncoder.encode(request.password()));
+        user.setPassword(passwordHash);
         user.setEmail(request.email());
         user.setCreatedAt(LocalDateTime.now());
         user.setActive(true);
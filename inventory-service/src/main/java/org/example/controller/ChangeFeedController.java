@@ -0,0 +1,31 @@
+package org.example.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.example.service.ChangeFeed;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/events")
+@RequiredArgsConstructor
+public class ChangeFeedController {
+
+    private final ChangeFeed changeFeed;
+
+    /**
+     * Delta events for the dashboard. Clients load their snapshot once, then follow this
+     * stream; on reconnect they send Last-Event-ID and get the events they missed, or a
+     * "resync" event when they have to reload the snapshot.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN', 'STOREKEEPER')")
+    public ResponseEntity<SseEmitter> stream(
+            @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")
+                .body(changeFeed.subscribe(lastEventId));
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.example.dto.DashboardSnapshot;
+import org.example.service.DashboardService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/dashboard")
+@RequiredArgsConstructor
+public class DashboardController {
+
+    private final DashboardService dashboardService;
+
+    /**
+     * Shipments, supplies, warehouses, products and utilization from one consistent read.
+     * Pass the section versions you already hold as {@code known} to get those sections
+     * without data; If-None-Match with the snapshot version returns 304 when nothing changed.
+     */
+    @GetMapping("/snapshot")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN', 'STOREKEEPER')")
+    public ResponseEntity<DashboardSnapshot> getSnapshot(
+            @RequestParam(required = false) List<String> known,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        DashboardSnapshot snapshot = dashboardService.snapshot(known != null ? Set.copyOf(known) : Set.of());
+        String etag = "\"" + snapshot.version() + "\"";
+
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(snapshot);
+    }
+}
@@ -1,77 +1,156 @@
 package org.example.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.example.dto.CalculateBatchRequest;
 import org.example.dto.CalculateRequest;
-import org.example.dto.DistributionEvent;
-import org.example.dto.ItemResponse;
+import org.example.dto.CalculationStatusResponse;
+import org.example.dto.CalculationTriggerResult;
+import org.example.dto.PageResponse;
+import org.example.dto.PipelineTimelineResponse;
 import org.example.dto.ShipmentResponse;
-import org.example.entity.Shipment;
-import org.example.entity.Supply;
-import org.example.repository.ShipmentRepository;
-import org.example.repository.SupplyRepository;
-import org.example.service.EventPublisher;
+import org.example.entity.ShipmentStatus;
+import org.example.repository.ShipmentJdbcRepository;
+import org.example.service.CalculationStatusService;
+import org.example.service.CalculationTriggerService;
+import org.example.service.ExportService;
+import org.example.service.PipelineTimeline;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import java.util.stream.Collectors;
-import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/distribution")
 @RequiredArgsConstructor
 public class DistributionController {
 
-    private final SupplyRepository supplyRepository;
-    private final EventPublisher eventPublisher;
+    private final CalculationTriggerService calculationTriggerService;
+    private final PipelineTimeline pipelineTimeline;
+    private final CalculationStatusService calculationStatusService;
 
     @Autowired
-    private ShipmentRepository shipmentRepository;
+    private ShipmentJdbcRepository shipmentJdbcRepository;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Value("${inventory.calculation.max-batch-size:500}")
+    private int maxBatchSize;
 
     @PostMapping("/calculate")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN')")
     public ResponseEntity<?> triggerCalculation(@RequestBody CalculateRequest request) {
+        if (request.getSupplyId() == null) {
+            return ResponseEntity.badRequest().body(Map.of("message", "supplyId is required"));
+        }
+
+        CalculationTriggerResult result = calculationTriggerService.trigger(List.of(request.getSupplyId())).get(0);
 
-        Supply supply = supplyRepository.findById(request.getSupplyId())
-                .orElseThrow(() -> new RuntimeException("Supply not found"));
+        return switch (result.outcome()) {
+            case NOT_FOUND -> throw new RuntimeException("Supply not found");
+            case ALREADY_PROCESSED -> ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "message", "Supply is already processed"));
+            case ALREADY_QUEUED -> ResponseEntity.accepted().body(Map.of(
+                    "message", "Calculation already in progress",
+                    "request_id", result.requestId()));
+            case QUEUED -> ResponseEntity.accepted().body(Map.of(
+                    "message", "Calculation triggered successfully",
+                    "request_id", result.requestId()));
+        };
+    }
 
-        String requestId = UUID.randomUUID().toString();
+    /**
+     * Triggers calculations for many supplies at once and reports per supply whether it was
+     * queued, joined its pending calculation, is already processed or does not exist.
+     */
+    @PostMapping("/calculate/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN')")
+    public ResponseEntity<?> triggerCalculations(@RequestBody CalculateBatchRequest request) {
+        List<Long> supplyIds = request.getSupplyIds();
+        if (supplyIds == null || supplyIds.isEmpty() || supplyIds.contains(null)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "supplyIds must be a non-empty list of IDs"));
+        }
+        if (supplyIds.size() > maxBatchSize) {
+            return ResponseEntity.badRequest().body(Map.of("message", "At most " + maxBatchSize + " supplyIds per request"));
+        }
 
-        var eventBuilder = DistributionEvent.builder()
-                .requestId(requestId)
-                .supplyId(supply.getId())
-                .sourceWarehouseId(supply.getWarehouseId());
+        return ResponseEntity.accepted().body(Map.of("results", calculationTriggerService.trigger(supplyIds)));
+    }
 
-        eventPublisher.sendCalculationRequest(eventBuilder);
+    /**
+     * QUEUED, APPLYING, DONE or FAILED with the move and unallocated counts. With
+     * {@code wait} (e.g. 30s; plain numbers are seconds) the request is held until the
+     * calculation finishes or the wait runs out, without occupying a request thread.
+     */
+    @GetMapping("/calculate/{requestId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN')")
+    public DeferredResult<ResponseEntity<CalculationStatusResponse>> getCalculationStatus(
+            @PathVariable String requestId,
+            @RequestParam(required = false) String wait) {
+        Duration waitFor;
+        try {
+            waitFor = wait != null ? DurationStyle.detectAndParse(wait, ChronoUnit.SECONDS) : Duration.ZERO;
+        } catch (IllegalArgumentException e) {
+            DeferredResult<ResponseEntity<CalculationStatusResponse>> invalid = new DeferredResult<>();
+            invalid.setResult(ResponseEntity.badRequest().build());
+            return invalid;
+        }
+        return calculationStatusService.await(requestId, waitFor);
+    }
 
-        return ResponseEntity.accepted().body(Map.of(
-                "message", "Calculation triggered successfully",
-                "request_id", requestId
-        ));
+    /**
+     * When each stage of a calculation happened on this instance: triggered, publish confirmed,
+     * generated by the engine, received and applied. Only recent requests are kept.
+     */
+    @GetMapping("/requests/{id}/timeline")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN')")
+    public ResponseEntity<PipelineTimelineResponse> getTimeline(@PathVariable String id) {
+        return pipelineTimeline.find(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    /**
+     * Newest shipments first. Pass the returned next_after_id as after_id for the next page.
+     */
     @GetMapping("/shipments")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN', 'STOREKEEPER')")
-    public ResponseEntity<List<ShipmentResponse>> getAllShipments() {
-        List<Shipment> shipments = shipmentRepository.findAll();
-
-        List<ShipmentResponse> response = shipments.stream().map(s -> new ShipmentResponse(
-                s.getId(),
-                s.getSource().getId(),
-                s.getDestination().getId(),
-                s.getStatus(),
-                s.getCreatedAt(),
-                s.getItems().stream()
-                        .map(item -> new ItemResponse(
-                                "Product-" + item.getProduct().getId(),
-                                item.getQuantity()))
-                        .collect(Collectors.toList())
-        )).collect(Collectors.toList());
-
-        return ResponseEntity.ok(response);
+    public ResponseEntity<PageResponse<ShipmentResponse>> getAllShipments(
+            @RequestParam(name = "after_id", required = false) Long afterId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) ShipmentStatus status,
+            @RequestParam(required = false) Long destination) {
+        int pageSize = PageResponse.clampLimit(limit);
+
+        List<ShipmentResponse> shipments = shipmentJdbcRepository.findPage(
+                afterId, status != null ? status.name() : null, destination, pageSize);
+
+        return ResponseEntity.ok(PageResponse.of(shipments, pageSize, ShipmentResponse::id));
+    }
+
+    /**
+     * Full shipment history as NDJSON, one shipment per line, oldest first.
+     */
+    @GetMapping("/shipments/export")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOGISTICIAN')")
+    public ResponseEntity<StreamingResponseBody> exportShipments(
+            @RequestParam(required = false) ShipmentStatus status,
+            @RequestParam(required = false) Long destination,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        String statusName = status != null ? status.name() : null;
+
+        return ExportResponses.ndjson("shipments.ndjson", acceptEncoding,
+                out -> exportService.writeShipments(statusName, destination, out));
     }
-}
\ No newline at end of file
+}
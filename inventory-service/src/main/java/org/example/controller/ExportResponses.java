@@ -0,0 +1,43 @@
+package org.example.controller;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds NDJSON export responses. The body is written on the MVC async executor, so the
+ * request thread is released right away; gzip is applied when the client accepts it.
+ */
+final class ExportResponses {
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private ExportResponses() {
+    }
+
+    static ResponseEntity<StreamingResponseBody> ndjson(String filename, String acceptEncoding,
+                                                        StreamingResponseBody body) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString());
+        if (!gzip) {
+            return response.body(body);
+        }
+
+        return response
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .body(out -> {
+                    GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024, true);
+                    body.writeTo(compressed);
+                    compressed.finish();
+                });
+    }
+}
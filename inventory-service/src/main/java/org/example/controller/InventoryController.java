@@ -1,17 +1,26 @@
 package org.example.controller;
 
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.example.dto.PageResponse;
+import org.example.dto.StockLevelResponse;
 import org.example.entity.Shipment;
 import org.example.entity.ShipmentStatus;
-import org.example.entity.StockLevel;
 import org.example.repository.ShipmentRepository;
 import org.example.repository.StockLevelRepository;
+import org.example.service.CapacityLedger;
+import org.example.service.ChangeFeed;
+import org.example.service.ExportService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/inventory")
@@ -20,11 +29,50 @@ public class InventoryController {
 
     private final StockLevelRepository stockLevelRepository;
     private final ShipmentRepository shipmentRepository;
+    private final CapacityLedger capacityLedger;
+    private final ExportService exportService;
+    private final ChangeFeed changeFeed;
 
+    /**
+     * Stock levels ordered by (warehouse, product). The cursor is "warehouseId:productId".
+     */
     @GetMapping("/stocks")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<List<StockLevel>> getCurrentStocks() {
-        return ResponseEntity.ok(stockLevelRepository.findAll());
+    public ResponseEntity<?> getCurrentStocks(
+            @RequestParam(name = "after_id", required = false) String afterId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long warehouse,
+            @RequestParam(required = false) Long product) {
+        Long afterWarehouseId = null;
+        Long afterProductId = null;
+        if (afterId != null) {
+            String[] parts = afterId.split(":");
+            try {
+                afterWarehouseId = Long.parseLong(parts[0]);
+                afterProductId = Long.parseLong(parts[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                return ResponseEntity.badRequest().body("after_id must be warehouseId:productId");
+            }
+        }
+
+        int pageSize = PageResponse.clampLimit(limit);
+        List<StockLevelResponse> stocks = stockLevelRepository.findPage(
+                warehouse, product, afterWarehouseId, afterProductId, PageRequest.ofSize(pageSize));
+
+        return ResponseEntity.ok(PageResponse.of(stocks, pageSize,
+                stock -> stock.warehouseId() + ":" + stock.productId()));
+    }
+
+    /**
+     * All stock levels as NDJSON, ordered by (warehouse, product).
+     */
+    @GetMapping("/stocks/export")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<StreamingResponseBody> exportStocks(
+            @RequestParam(required = false) Long warehouse,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return ExportResponses.ndjson("stock-levels.ndjson", acceptEncoding,
+                out -> exportService.writeStockLevels(warehouse, out));
     }
 
     @PostMapping("/inbound")
@@ -36,6 +84,7 @@ public class InventoryController {
 
     @PutMapping("/shipments/{id}/status")
     @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN', 'LOGISTICIAN')")
+    @Transactional
     public ResponseEntity<?> updateShipmentStatus(
             @PathVariable Long id,
             @RequestParam String status
@@ -45,6 +94,7 @@ public class InventoryController {
 
         try {
             ShipmentStatus newStatus = ShipmentStatus.valueOf(status);
+            String oldStatus = shipment.getStatus();
 
             shipment.setStatus(newStatus.name());
             shipment.setLastModifiedAt(LocalDateTime.now());
@@ -53,6 +103,16 @@ public class InventoryController {
 
             shipmentRepository.save(shipment);
 
+            if (!newStatus.name().equals(oldStatus)) {
+                double volume = shipment.getItems().stream()
+                        .mapToDouble(item -> item.getQuantity() * item.getProduct().getVolumeM3())
+                        .sum();
+                capacityLedger.recordShipmentStatusChange(
+                        shipment.getDestination().getId(), oldStatus, newStatus.name(), volume);
+                changeFeed.publish(ChangeFeed.Type.SHIPMENT_STATUS_CHANGED,
+                        Map.of("id", shipment.getId(), "status", newStatus.name()));
+            }
+
             return ResponseEntity.ok("Shipment status updated to " + status);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body("Invalid status provided");
@@ -0,0 +1,10 @@
+package org.example.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CalculateBatchRequest {
+    private List<Long> supplyIds;
+}
@@ -0,0 +1,29 @@
+package org.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+
+/**
+ * @param moves            moves applied so far (all of them once DONE)
+ * @param unallocatedItems items the engine could not place
+ * @param updatedAt        last change of the plan record, null while the engine is still calculating
+ */
+public record CalculationStatusResponse(
+        @JsonProperty("request_id") String requestId,
+        Status status,
+        int moves,
+        @JsonProperty("unallocated_items") int unallocatedItems,
+        @JsonProperty("updated_at") LocalDateTime updatedAt) {
+
+    public enum Status {
+        QUEUED,   // Waiting for the engine, or for an apply worker
+        APPLYING, // Batches of a streamed plan are being committed
+        DONE,
+        FAILED;
+
+        public boolean isFinal() {
+            return this == DONE || this == FAILED;
+        }
+    }
+}
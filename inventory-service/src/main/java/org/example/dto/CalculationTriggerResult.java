@@ -0,0 +1,19 @@
+package org.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * @param requestId the new or already pending calculation, null when nothing was queued
+ */
+public record CalculationTriggerResult(
+        @JsonProperty("supply_id") Long supplyId,
+        @JsonProperty("request_id") String requestId,
+        Outcome outcome) {
+
+    public enum Outcome {
+        QUEUED,            // A new calculation was queued
+        ALREADY_QUEUED,    // The supply's pending calculation was returned instead
+        ALREADY_PROCESSED,
+        NOT_FOUND
+    }
+}
@@ -0,0 +1,21 @@
+package org.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * All dashboard sections read in one transaction. A section whose version the client
+ * already has is sent without data. {@code feedPosition} is the change feed event the
+ * sections are current with; clients subscribe to the feed with it as Last-Event-ID.
+ */
+public record DashboardSnapshot(
+        String version,
+        long feedPosition,
+        Map<String, Section> sections
+) {
+    public record Section(
+            String version,
+            @JsonInclude(JsonInclude.Include.NON_NULL) Object data
+    ) {}
+}
@@ -3,9 +3,11 @@ package org.example.dto;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 
 @Data
 @Builder
+@Jacksonized
 public class DistributionEvent {
     @JsonProperty("request_id")
     private String requestId;
@@ -21,4 +23,7 @@ public class DistributionEvent {
 
     @JsonProperty("initiated_by_username")
     private String initiatedByUsername;
+
+    @JsonProperty("size_class")
+    private SizeClass sizeClass;
 }
\ No newline at end of file
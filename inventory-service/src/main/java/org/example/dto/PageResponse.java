@@ -0,0 +1,30 @@
+package org.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated list. Pass {@code nextAfterId} back as {@code after_id}
+ * to get the next page; it is null on the last page.
+ */
+public record PageResponse<T>(
+        List<T> items,
+        @JsonProperty("next_after_id") String nextAfterId
+) {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    public static int clampLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    public static <T> PageResponse<T> of(List<T> items, int limit, Function<T, ?> cursor) {
+        String next = items.size() < limit ? null : String.valueOf(cursor.apply(items.get(items.size() - 1)));
+        return new PageResponse<>(items, next);
+    }
+}
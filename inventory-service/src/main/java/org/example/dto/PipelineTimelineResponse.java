@@ -0,0 +1,23 @@
+package org.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Stages of one calculation in pipeline order; stages not seen by this instance are left out.
+ */
+public record PipelineTimelineResponse(
+        @JsonProperty("request_id") String requestId,
+        List<StageTime> stages) {
+
+    /**
+     * @param sincePreviousMs time since the previous listed stage, null for the first one
+     */
+    public record StageTime(
+            String stage,
+            Instant at,
+            @JsonProperty("since_previous_ms") Long sincePreviousMs) {
+    }
+}
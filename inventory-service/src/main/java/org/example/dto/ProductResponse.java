@@ -0,0 +1,10 @@
+package org.example.dto;
+
+import java.time.LocalDateTime;
+
+public record ProductResponse(
+        Long id,
+        Double volumeM3,
+        String createdBy,
+        LocalDateTime createdAt
+) {}
@@ -0,0 +1,9 @@
+package org.example.dto;
+
+/**
+ * Projection of a product reduced to what plan application needs.
+ */
+public interface ProductVolume {
+    Long getId();
+    Double getVolumeM3();
+}
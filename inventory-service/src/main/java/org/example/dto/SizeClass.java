@@ -0,0 +1,11 @@
+package org.example.dto;
+
+/**
+ * How much work a calculation request is, decided when it is triggered. Each class has its
+ * own queue lane, so small supplies are not stuck behind a backlog of large ones.
+ */
+public enum SizeClass {
+    SMALL,
+    MEDIUM,
+    LARGE
+}
@@ -0,0 +1,7 @@
+package org.example.dto;
+
+public record StockLevelResponse(
+        Long warehouseId,
+        Long productId,
+        Integer quantity
+) {}
@@ -0,0 +1,14 @@
+package org.example.dto;
+
+import org.example.entity.SupplyStatus;
+
+import java.time.LocalDateTime;
+
+public record SupplyResponse(
+        Long id,
+        Long warehouseId,
+        SupplyStatus status,
+        LocalDateTime arrivalDate,
+        String createdBy,
+        LocalDateTime createdAt
+) {}
@@ -0,0 +1,14 @@
+package org.example.dto;
+
+import org.example.entity.SupplyStatus;
+
+/**
+ * Projection of a supply's source warehouse, status and size.
+ */
+public interface SupplyState {
+    Long getId();
+    Long getWarehouseId();
+    SupplyStatus getStatus();
+    Long getUnits();
+    Double getVolumeM3();
+}
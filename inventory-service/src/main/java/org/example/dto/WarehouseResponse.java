@@ -0,0 +1,10 @@
+package org.example.dto;
+
+import java.time.LocalDateTime;
+
+public record WarehouseResponse(
+        Long id,
+        Double totalCapacity,
+        String createdBy,
+        LocalDateTime createdAt
+) {}
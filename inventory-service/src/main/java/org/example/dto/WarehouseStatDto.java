@@ -11,4 +11,19 @@ public class WarehouseStatDto {
     private double usedCapacity;
     private double freeCapacity;
     private double utilizationPercentage;
+
+    public static WarehouseStatDto of(Long warehouseId, double totalCapacity, double usedCapacity) {
+        double free = totalCapacity - usedCapacity;
+        if (free < 0) free = 0;
+
+        double percentage = (totalCapacity > 0) ? (usedCapacity / totalCapacity) * 100 : 0;
+
+        return WarehouseStatDto.builder()
+                .name("WH-" + warehouseId)
+                .totalCapacity(totalCapacity)
+                .usedCapacity(usedCapacity)
+                .freeCapacity(free)
+                .utilizationPercentage(percentage)
+                .build();
+    }
 }
\ No newline at end of file
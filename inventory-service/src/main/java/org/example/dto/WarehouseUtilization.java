@@ -0,0 +1,10 @@
+package org.example.dto;
+
+/**
+ * Projection for capacity and used volume (shipped plus received supply) per warehouse.
+ */
+public interface WarehouseUtilization {
+    Long getWarehouseId();
+    Double getTotalCapacity();
+    Double getUsedVolume();
+}
@@ -0,0 +1,10 @@
+package org.example.dto;
+
+/**
+ * Projection for grouped volume aggregates (one row per warehouse and status).
+ */
+public interface WarehouseVolume {
+    Long getWarehouseId();
+    String getStatus();
+    Double getVolume();
+}
@@ -0,0 +1,51 @@
+package org.example.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a distribution plan delivered by the engine, keyed by its request ID.
+ */
+@Data
+@Entity
+@Table(name = "plan_applications")
+public class PlanApplication {
+    @Id
+    @Column(name = "request_id")
+    private String requestId;
+
+    @Column(name = "supply_id")
+    private Long supplyId;
+
+    @Column(name = "source_id", nullable = false)
+    private Long sourceId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PlanApplicationStatus status;
+
+    // Delivered through ProcessPlanStream, which may resume it after an interruption
+    @Column(nullable = false)
+    private boolean streamed;
+
+    @Column(name = "chunks_applied", nullable = false)
+    private int chunksApplied;
+
+    @Column(name = "moves_applied", nullable = false)
+    private int movesApplied;
+
+    @Column(name = "unallocated_items", nullable = false)
+    private int unallocatedItems;
+
+    // Serialized DistributionPlan, kept only while the plan is QUEUED
+    @Column(name = "payload")
+    private byte[] payload;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "last_modified_at")
+    private LocalDateTime lastModifiedAt = LocalDateTime.now();
+}
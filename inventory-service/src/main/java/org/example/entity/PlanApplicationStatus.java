@@ -0,0 +1,8 @@
+package org.example.entity;
+
+public enum PlanApplicationStatus {
+    QUEUED,      // Recorded with its payload, waiting for an async apply worker
+    IN_PROGRESS, // Header received, batches are being committed
+    APPLIED,     // All moves written and supply marked PROCESSED
+    FAILED       // Rejected; see service logs for the cause
+}
@@ -13,6 +13,10 @@ public class Shipment {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Plan that created the shipment; null for rows written before plans were tracked
+    @Column(name = "request_id")
+    private String requestId;
+
     @ManyToOne
     @JoinColumn(name = "source_id")
     private Warehouse source;
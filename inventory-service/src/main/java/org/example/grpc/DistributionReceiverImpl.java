@@ -1,32 +1,189 @@
 package org.example.grpc;
 
+import com.google.protobuf.Any;
+import com.google.protobuf.Duration;
+import com.google.rpc.Code;
+import com.google.rpc.RetryInfo;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.StatusProto;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.example.service.AppliedPlanCache;
+import org.example.service.AsyncPlanApplier;
 import org.example.service.DistributionService;
+import org.example.service.InFlightCalculations;
+import org.example.service.PipelineTimeline;
+import org.example.service.PlanStreamService;
+import org.example.service.ShardedPlanApplier;
 
 @Slf4j
-@GrpcService
+@GrpcService(interceptors = PlanMetricsInterceptor.class)
 @RequiredArgsConstructor
 public class DistributionReceiverImpl extends DistributionResultReceiverGrpc.DistributionResultReceiverImplBase {
 
     private final DistributionService distributionService;
+    private final PlanStreamService planStreamService;
+    private final AsyncPlanApplier asyncPlanApplier;
+    private final AppliedPlanCache appliedPlanCache;
+    private final ShardedPlanApplier shardedPlanApplier;
+    private final PipelineTimeline pipelineTimeline;
+    private final InFlightCalculations inFlightCalculations;
 
     @Override
     public void processPlan(DistributionPlan request, StreamObserver<Empty> responseObserver) {
         try {
             log.info("Received plan from Go. RequestID: {}", request.getRequestId());
+            pipelineTimeline.received(request.getRequestId(), request.getGeneratedAt());
+
+            if (appliedPlanCache.isApplied(request.getRequestId())) {
+                log.info("Plan {} already applied, acknowledging duplicate", request.getRequestId());
+                responseObserver.onNext(Empty.newBuilder().build());
+                responseObserver.onCompleted();
+                return;
+            }
+
+            if (asyncPlanApplier.isEnabled()) {
+                if (!asyncPlanApplier.submit(request)) {
+                    log.warn("Apply queue full, asking engine to retry plan {}", request.getRequestId());
+                    responseObserver.onError(queueFull());
+                    return;
+                }
+                responseObserver.onNext(Empty.newBuilder().build());
+                responseObserver.onCompleted();
+                return;
+            }
+
             long supplyId = request.getSupplyId();
             Long finalSupplyId = (supplyId == 0) ? null : supplyId;
 
-            distributionService.applyDistributionPlan(request, finalSupplyId);
+            if (shardedPlanApplier.shouldApply(request)) {
+                shardedPlanApplier.apply(request, finalSupplyId);
+            } else {
+                distributionService.applyDistributionPlan(request, finalSupplyId);
+            }
 
             responseObserver.onNext(Empty.newBuilder().build());
             responseObserver.onCompleted();
         } catch (Exception e) {
             log.error("Failed to process distribution plan", e);
+            recordFailure(request);
             responseObserver.onError(e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The apply transaction rolled back, so the failure is recorded separately; otherwise
+     * callers waiting on the calculation would only see it as still queued.
+     */
+    private void recordFailure(DistributionPlan request) {
+        try {
+            distributionService.failPlan(request, request.getSupplyId() == 0 ? null : request.getSupplyId());
+        } catch (Exception e) {
+            // E.g. the plan names a supply that does not exist; the trigger must not stay pending
+            log.warn("Could not record plan {} as failed", request.getRequestId(), e);
+            inFlightCalculations.release(request.getRequestId());
+        }
+    }
+
+    private StatusRuntimeException queueFull() {
+        long retryAfterMs = asyncPlanApplier.getRetryAfterMs();
+        com.google.rpc.Status status = com.google.rpc.Status.newBuilder()
+                .setCode(Code.RESOURCE_EXHAUSTED_VALUE)
+                .setMessage("Plan apply queue is full, retry in " + retryAfterMs + " ms")
+                .addDetails(Any.pack(RetryInfo.newBuilder()
+                        .setRetryDelay(Duration.newBuilder()
+                                .setSeconds(retryAfterMs / 1000)
+                                .setNanos((int) (retryAfterMs % 1000) * 1_000_000))
+                        .build()))
+                .build();
+        return StatusProto.toStatusRuntimeException(status);
+    }
+
+    /**
+     * Batches are applied synchronously inside onNext, so gRPC flow control holds back
+     * the next message until the previous one is committed and only one batch is on heap.
+     */
+    @Override
+    public StreamObserver<PlanChunk> processPlanStream(StreamObserver<Empty> responseObserver) {
+        return new StreamObserver<>() {
+            private String requestId;
+            private boolean alreadyApplied;
+            private boolean failed;
+
+            @Override
+            public void onNext(PlanChunk chunk) {
+                if (failed || alreadyApplied) {
+                    return;
+                }
+                try {
+                    switch (chunk.getPayloadCase()) {
+                        case HEADER -> {
+                            requestId = chunk.getHeader().getRequestId();
+                            log.info("Receiving plan stream from Go. RequestID: {}", requestId);
+                            pipelineTimeline.received(requestId, chunk.getHeader().getGeneratedAt());
+                            alreadyApplied = appliedPlanCache.isApplied(requestId);
+                            if (!alreadyApplied) {
+                                planStreamService.begin(chunk.getHeader());
+                            }
+                        }
+                        case BATCH -> {
+                            if (requestId == null) {
+                                throw Status.INVALID_ARGUMENT
+                                        .withDescription("First message of a plan stream must be the header")
+                                        .asRuntimeException();
+                            }
+                            planStreamService.applyBatch(requestId, chunk.getBatch());
+                        }
+                        default -> throw Status.INVALID_ARGUMENT
+                                .withDescription("Empty plan chunk")
+                                .asRuntimeException();
+                    }
+                } catch (Exception e) {
+                    abort(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Plan stream {} cancelled by client; committed batches are kept for resume: {}",
+                        requestId, t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                if (failed) {
+                    return;
+                }
+                if (requestId == null) {
+                    abort(Status.INVALID_ARGUMENT.withDescription("Plan stream had no header").asRuntimeException());
+                    return;
+                }
+                try {
+                    if (!alreadyApplied) {
+                        planStreamService.complete(requestId);
+                    }
+                    responseObserver.onNext(Empty.newBuilder().build());
+                    responseObserver.onCompleted();
+                } catch (Exception e) {
+                    abort(e);
+                }
+            }
+
+            private void abort(Exception e) {
+                failed = true;
+                log.error("Failed to process plan stream {}", requestId, e);
+                if (requestId != null) {
+                    try {
+                        planStreamService.fail(requestId);
+                    } catch (Exception markFailure) {
+                        log.warn("Could not mark plan stream {} as failed", requestId, markFailure);
+                    }
+                }
+                responseObserver.onError(e);
+            }
+        };
+    }
+}
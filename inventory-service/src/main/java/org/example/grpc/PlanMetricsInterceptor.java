@@ -0,0 +1,102 @@
+package org.example.grpc;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the plan RPCs by method and status, and records the moves and unallocated items
+ * each plan carried. Every timer is registered up front, so a call only looks meters up.
+ */
+@Component
+public class PlanMetricsInterceptor implements ServerInterceptor {
+
+    private final Map<String, Timer[]> timersByMethod = new HashMap<>();
+    private final DistributionSummary movesPerPlan;
+    private final DistributionSummary unallocatedPerPlan;
+
+    public PlanMetricsInterceptor(MeterRegistry meterRegistry) {
+        Status.Code[] codes = Status.Code.values();
+        for (MethodDescriptor<?, ?> method : DistributionResultReceiverGrpc.getServiceDescriptor().getMethods()) {
+            Timer[] timers = new Timer[codes.length];
+            for (Status.Code code : codes) {
+                timers[code.ordinal()] = Timer.builder("inventory.grpc.plan.duration")
+                        .description("Time from receiving a plan call until its response status was sent")
+                        .tag("method", method.getBareMethodName())
+                        .tag("status", code.name())
+                        .register(meterRegistry);
+            }
+            timersByMethod.put(method.getFullMethodName(), timers);
+        }
+
+        this.movesPerPlan = DistributionSummary.builder("inventory.grpc.plan.moves")
+                .description("Moves per plan received from the engine")
+                .register(meterRegistry);
+        this.unallocatedPerPlan = DistributionSummary.builder("inventory.grpc.plan.unallocated")
+                .description("Unallocated items per plan received from the engine")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        Timer[] timers = timersByMethod.get(call.getMethodDescriptor().getFullMethodName());
+        if (timers == null) {
+            return next.startCall(call, headers);
+        }
+
+        PlanCall<ReqT, RespT> planCall = new PlanCall<>(call, timers);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(planCall, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                planCall.count(message);
+                super.onMessage(message);
+            }
+        };
+    }
+
+    private final class PlanCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final Timer[] timers;
+        private final long startNanos = System.nanoTime();
+        private long moves;
+        private long unallocated;
+
+        private PlanCall(ServerCall<ReqT, RespT> delegate, Timer[] timers) {
+            super(delegate);
+            this.timers = timers;
+        }
+
+        // Messages of one call are delivered serially, so plain fields are enough
+        private void count(Object message) {
+            if (message instanceof DistributionPlan plan) {
+                moves += plan.getMovesCount();
+                unallocated += plan.getUnallocatedItemsCount();
+            } else if (message instanceof PlanChunk chunk && chunk.hasBatch()) {
+                moves += chunk.getBatch().getMovesCount();
+                unallocated += chunk.getBatch().getUnallocatedItemsCount();
+            }
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            timers[status.getCode().ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            movesPerPlan.record(moves);
+            unallocatedPerPlan.record(unallocated);
+            super.close(status, trailers);
+        }
+    }
+}
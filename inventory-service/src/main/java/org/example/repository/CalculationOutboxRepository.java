@@ -0,0 +1,183 @@
+package org.example.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.example.dto.SizeClass;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Calculation requests waiting to be published. Rows are written in the transaction that
+ * triggers the calculation and deleted once the broker has confirmed them.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CalculationOutboxRepository {
+
+    private static final String INSERT =
+            "INSERT INTO calculation_outbox (request_id, source_warehouse_id, size_class, payload) VALUES (?, ?, ?, ?)";
+
+    // One relay at a time claims a hub's rows; relays working on other hubs are not held up
+    private static final String LOCK_HUBS = """
+        SELECT hub FROM unnest(?) AS hub
+        WHERE pg_try_advisory_xact_lock(hashtext('calculation_outbox'), CAST(hub % 2147483647 AS INT))
+    """;
+
+    // A row waits while an earlier row of its hub is backing off, so a hub's requests go out in order
+    private static final String LOCK_DUE = """
+        SELECT id, request_id, source_warehouse_id, size_class, payload, attempts,
+               CAST(EXTRACT(EPOCH FROM (now() - created_at)) * 1000 AS BIGINT) AS age_ms
+        FROM calculation_outbox o
+        WHERE next_attempt_at <= now()
+          AND NOT EXISTS (
+              SELECT 1 FROM calculation_outbox earlier
+              WHERE earlier.source_warehouse_id = o.source_warehouse_id
+                AND earlier.id < o.id
+                AND earlier.next_attempt_at > now())
+        ORDER BY id
+        LIMIT ?
+        FOR UPDATE SKIP LOCKED
+    """;
+
+    // Under the hub locks and on the latest commits: a row is only claimed if every earlier row
+    // of its hub is claimed with it, so a hub's rows never go out from two relays at once
+    private static final String LEASE = """
+        UPDATE calculation_outbox o
+        SET next_attempt_at = now() + CAST(? AS BIGINT) * INTERVAL '1 millisecond'
+        WHERE o.id = ANY(?)
+          AND NOT EXISTS (
+              SELECT 1 FROM calculation_outbox earlier
+              WHERE earlier.source_warehouse_id = o.source_warehouse_id
+                AND earlier.id < o.id
+                AND NOT earlier.id = ANY(?))
+        RETURNING o.id
+    """;
+
+    private static final String DELETE = "DELETE FROM calculation_outbox WHERE id = ANY(?)";
+
+    private static final String RESCHEDULE = """
+        UPDATE calculation_outbox
+        SET attempts = attempts + 1,
+            next_attempt_at = now() + CAST(? AS BIGINT) * INTERVAL '1 millisecond',
+            last_error = ?
+        WHERE id = ?
+    """;
+
+    private static final String RELEASE = "UPDATE calculation_outbox SET next_attempt_at = now() WHERE id = ANY(?)";
+
+    private static final String BACKLOG = """
+        SELECT COUNT(*) AS pending,
+               COALESCE(CAST(EXTRACT(EPOCH FROM (now() - MIN(created_at))) * 1000 AS BIGINT), 0) AS oldest_age_ms
+        FROM calculation_outbox
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param sourceWarehouseId partition key, null for rows written before partitioning
+     * @param sizeClass         lane, null for rows written before lanes
+     * @param ageMs             time since the row was written, by the database clock
+     */
+    public record Entry(long id, String requestId, Long sourceWarehouseId, SizeClass sizeClass, String payload,
+                        int attempts, long ageMs) {}
+
+    public record Backlog(long pending, long oldestAgeMs) {}
+
+    public record NewEntry(String requestId, Long sourceWarehouseId, SizeClass sizeClass, String payload) {}
+
+    /**
+     * Writes all entries in one JDBC batch.
+     */
+    public void insertAll(List<NewEntry> entries) {
+        jdbcTemplate.batchUpdate(INSERT, entries, entries.size(), (ps, entry) -> {
+            ps.setString(1, entry.requestId());
+            ps.setObject(2, entry.sourceWarehouseId(), Types.BIGINT);
+            ps.setString(3, entry.sizeClass() != null ? entry.sizeClass().name() : null);
+            ps.setString(4, entry.payload());
+        });
+    }
+
+    /**
+     * Takes the claim lock of each source warehouse that no other relay holds, until the
+     * surrounding transaction ends.
+     *
+     * @return the source warehouses locked
+     */
+    public Set<Long> tryLockHubs(Collection<Long> sourceWarehouseIds) {
+        if (sourceWarehouseIds.isEmpty()) {
+            return Set.of();
+        }
+        Long[] hubs = sourceWarehouseIds.toArray(Long[]::new);
+        return new HashSet<>(jdbcTemplate.query(LOCK_HUBS,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", hubs)),
+                (rs, i) -> rs.getLong("hub")));
+    }
+
+    /**
+     * Pushes the next attempt of the rows out by {@code leaseMs}, so no relay picks them up
+     * while they are being published. Rows of a hub with an earlier row outside {@code ids}
+     * are left alone.
+     *
+     * @return IDs of the rows leased
+     */
+    public Set<Long> lease(Collection<Long> ids, long leaseMs) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        Long[] idArray = ids.toArray(Long[]::new);
+        return new HashSet<>(jdbcTemplate.query(LEASE, ps -> {
+            Array array = ps.getConnection().createArrayOf("bigint", idArray);
+            ps.setLong(1, leaseMs);
+            ps.setArray(2, array);
+            ps.setArray(3, array);
+        }, (rs, i) -> rs.getLong("id")));
+    }
+
+    /**
+     * Locks up to {@code limit} rows that are due, oldest first, until the surrounding
+     * transaction ends. Rows behind a backing-off row of the same source warehouse are left out.
+     */
+    public List<Entry> lockDue(int limit) {
+        return jdbcTemplate.query(LOCK_DUE, (rs, i) -> new Entry(
+                rs.getLong("id"),
+                rs.getString("request_id"),
+                rs.getObject("source_warehouse_id", Long.class),
+                rs.getString("size_class") != null ? SizeClass.valueOf(rs.getString("size_class")) : null,
+                rs.getString("payload"),
+                rs.getInt("attempts"),
+                rs.getLong("age_ms")), limit);
+    }
+
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Long[] idArray = ids.toArray(Long[]::new);
+        jdbcTemplate.update(DELETE, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", idArray)));
+    }
+
+    /**
+     * Makes leased rows due again without counting an attempt.
+     */
+    public void release(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Long[] idArray = ids.toArray(Long[]::new);
+        jdbcTemplate.update(RELEASE, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", idArray)));
+    }
+
+    public void reschedule(long id, long delayMs, String error) {
+        jdbcTemplate.update(RESCHEDULE, delayMs, error != null && error.length() > 500 ? error.substring(0, 500) : error, id);
+    }
+
+    public Backlog backlog() {
+        return jdbcTemplate.queryForObject(BACKLOG, (rs, i) -> new Backlog(rs.getLong("pending"), rs.getLong("oldest_age_ms")));
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Types;
+
+/**
+ * Full-table reads for exports. Rows are handed to the callback one at a time while the
+ * driver pulls them in fetch-size batches; the PostgreSQL driver only opens a server-side
+ * cursor inside a transaction, so callers must run these in one.
+ */
+@Repository
+public class ExportJdbcRepository {
+
+    /*
+     * Ordered by shipment so that all items of a shipment arrive on consecutive rows. The
+     * shipments primary key and idx_shipment_items_shipment_id let PostgreSQL merge-join the
+     * two index scans and sort only within a shipment, so the first row comes back at once
+     * instead of after a sort of the whole join.
+     */
+    private static final String EXPORT_SHIPMENTS = """
+        SELECT s.id, s.source_id, s.destination_id, s.status, s.created_at, si.product_id, si.quantity
+        FROM shipments s
+        LEFT JOIN shipment_items si ON si.shipment_id = s.id
+        WHERE (CAST(? AS VARCHAR) IS NULL OR s.status = ?)
+          AND (CAST(? AS BIGINT) IS NULL OR s.destination_id = ?)
+        ORDER BY s.id, si.id
+    """;
+
+    private static final String EXPORT_STOCK_LEVELS = """
+        SELECT warehouse_id, product_id, quantity
+        FROM stock_levels
+        WHERE (CAST(? AS BIGINT) IS NULL OR warehouse_id = ?)
+        ORDER BY warehouse_id, product_id
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ExportJdbcRepository(DataSource dataSource,
+                                @Value("${inventory.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    public void streamShipments(String status, Long destinationId, RowCallbackHandler handler) {
+        jdbcTemplate.query(EXPORT_SHIPMENTS,
+                ps -> {
+                    ps.setString(1, status);
+                    ps.setString(2, status);
+                    ps.setObject(3, destinationId, Types.BIGINT);
+                    ps.setObject(4, destinationId, Types.BIGINT);
+                },
+                handler);
+    }
+
+    public void streamStockLevels(Long warehouseId, RowCallbackHandler handler) {
+        jdbcTemplate.query(EXPORT_STOCK_LEVELS,
+                ps -> {
+                    ps.setObject(1, warehouseId, Types.BIGINT);
+                    ps.setObject(2, warehouseId, Types.BIGINT);
+                },
+                handler);
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.repository;
+
+import jakarta.persistence.LockModeType;
+import org.example.entity.PlanApplication;
+import org.example.entity.PlanApplicationStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface PlanApplicationRepository extends JpaRepository<PlanApplication, String> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT pa FROM PlanApplication pa WHERE pa.requestId = :requestId")
+    Optional<PlanApplication> findForUpdate(@Param("requestId") String requestId);
+
+    /**
+     * Inserts an IN_PROGRESS row unless one exists; a plan that failed before any of its
+     * moves were committed is claimed again. A concurrent claim for the same request ID
+     * blocks until the first transaction finishes.
+     *
+     * @return 1 if this call created or re-claimed the row, 0 if the plan was already known
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO plan_applications (request_id, supply_id, source_id, status, created_at, last_modified_at)
+        VALUES (:requestId, CAST(:supplyId AS BIGINT), :sourceId, 'IN_PROGRESS', now(), now())
+        ON CONFLICT (request_id) DO UPDATE
+            SET status = 'IN_PROGRESS', payload = NULL, streamed = FALSE, last_modified_at = now()
+            WHERE plan_applications.status = 'FAILED' AND plan_applications.chunks_applied = 0
+    """, nativeQuery = true)
+    int claim(@Param("requestId") String requestId,
+              @Param("supplyId") Long supplyId,
+              @Param("sourceId") Long sourceId);
+
+    /**
+     * Records a plan as QUEUED with its payload. A plan that failed before any of its
+     * moves were committed is queued again, so a retry by the engine is applied.
+     *
+     * @return 1 if the plan was recorded or re-queued, 0 if it is already queued, in
+     *         progress or applied
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+        INSERT INTO plan_applications (request_id, supply_id, source_id, status, payload, created_at, last_modified_at)
+        VALUES (:requestId, CAST(:supplyId AS BIGINT), :sourceId, 'QUEUED', :payload, now(), now())
+        ON CONFLICT (request_id) DO UPDATE
+            SET status = 'QUEUED', payload = EXCLUDED.payload, streamed = FALSE, last_modified_at = now()
+            WHERE plan_applications.status = 'FAILED' AND plan_applications.chunks_applied = 0
+    """, nativeQuery = true)
+    int admit(@Param("requestId") String requestId,
+              @Param("supplyId") Long supplyId,
+              @Param("sourceId") Long sourceId,
+              @Param("payload") byte[] payload);
+
+    /**
+     * Records a plan whose apply transaction rolled back as FAILED. A record left by
+     * another delivery path is not touched.
+     *
+     * @return 1 if the plan is recorded as FAILED, 0 if another path holds its record
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO plan_applications (request_id, supply_id, source_id, status, created_at, last_modified_at)
+        VALUES (:requestId, CAST(:supplyId AS BIGINT), :sourceId, 'FAILED', now(), now())
+        ON CONFLICT (request_id) DO UPDATE
+            SET last_modified_at = now()
+            WHERE plan_applications.status = 'FAILED'
+    """, nativeQuery = true)
+    int recordFailure(@Param("requestId") String requestId,
+                      @Param("supplyId") Long supplyId,
+                      @Param("sourceId") Long sourceId);
+
+    @Query("SELECT pa.requestId FROM PlanApplication pa WHERE pa.status = :status ORDER BY pa.createdAt")
+    List<String> findRequestIdsByStatus(@Param("status") PlanApplicationStatus status);
+
+    // Claims of the sharded path not finished by the cutoff; streamed plans are resumed by their client
+    @Query("SELECT pa.requestId FROM PlanApplication pa WHERE pa.status = :status AND pa.streamed = false " +
+            "AND pa.lastModifiedAt < :cutoff ORDER BY pa.createdAt")
+    List<String> findStaleClaims(@Param("status") PlanApplicationStatus status,
+                                 @Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE PlanApplication pa SET pa.status = :status, pa.lastModifiedAt = CURRENT_TIMESTAMP " +
+            "WHERE pa.requestId = :requestId")
+    int updateStatus(@Param("requestId") String requestId, @Param("status") PlanApplicationStatus status);
+}
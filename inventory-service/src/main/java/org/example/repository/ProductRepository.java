@@ -1,7 +1,23 @@
 package org.example.repository;
 
+import org.example.dto.ProductResponse;
+import org.example.dto.ProductVolume;
 import org.example.entity.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    @Query("SELECT p.id AS id, p.volumeM3 AS volumeM3 FROM Product p WHERE p.id IN :ids")
+    List<ProductVolume> findVolumesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new org.example.dto.ProductResponse(p.id, p.volumeM3, p.createdBy, p.createdAt) " +
+            "FROM Product p " +
+            "WHERE (:afterId IS NULL OR p.id > :afterId) " +
+            "ORDER BY p.id")
+    List<ProductResponse> findPage(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -1,10 +1,13 @@
 package org.example.repository;
 
+import org.example.dto.WarehouseVolume;
 import org.example.entity.ShipmentItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+
 public interface ShipmentItemRepository extends JpaRepository<ShipmentItem,Long> {
     @Query("SELECT COALESCE(SUM(si.quantity * p.volumeM3), 0) " +
             "FROM ShipmentItem si " +
@@ -12,4 +15,12 @@ public interface ShipmentItemRepository extends JpaRepository<ShipmentItem,Long>
             "JOIN si.product p " +
             "WHERE s.destination.id = :warehouseId")
     Double calculateUsedVolumeByWarehouse(@Param("warehouseId") Long warehouseId);
+
+    @Query("SELECT s.destination.id AS warehouseId, s.status AS status, " +
+            "COALESCE(SUM(si.quantity * p.volumeM3), 0) AS volume " +
+            "FROM ShipmentItem si " +
+            "JOIN si.shipment s " +
+            "JOIN si.product p " +
+            "GROUP BY s.destination.id, s.status")
+    List<WarehouseVolume> calculateUsedVolumeByWarehouseAndStatus();
 }
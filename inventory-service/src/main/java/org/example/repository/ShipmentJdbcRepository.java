@@ -0,0 +1,326 @@
+package org.example.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.example.dto.ItemResponse;
+import org.example.dto.ShipmentResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Set-based write path for plan application. Moves are coalesced into one shipment per
+ * destination. Shipment IDs are drawn from the BIGSERIAL sequence in one round trip, and
+ * each table is then filled by a single INSERT ... SELECT FROM unnest(...) statement.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ShipmentJdbcRepository {
+
+    private static final String ALLOCATE_SHIPMENT_IDS =
+            "SELECT nextval('shipments_id_seq') FROM generate_series(1, ?)";
+
+    private static final String FIND_PLAN_SHIPMENTS = """
+        SELECT destination_id, id
+        FROM shipments
+        WHERE request_id = ? AND source_id = ? AND status = ? AND destination_id = ANY(?)
+    """;
+
+    private static final String INSERT_SHIPMENTS = """
+        INSERT INTO shipments (id, request_id, source_id, destination_id, status,
+                               created_by, created_at, last_modified_by, last_modified_at)
+        SELECT t.id, ?, ?, t.destination_id, ?, ?, ?, ?, ?
+        FROM unnest(?::bigint[], ?::bigint[]) AS t(id, destination_id)
+    """;
+
+    private static final String INSERT_SHIPMENT_ITEMS = """
+        INSERT INTO shipment_items (shipment_id, product_id, quantity)
+        SELECT * FROM unnest(?::bigint[], ?::bigint[], ?::int[])
+    """;
+
+    private static final String VOLUME_BY_DESTINATION = """
+        SELECT s.destination_id, COALESCE(SUM(si.quantity * p.volume_m3), 0) AS volume
+        FROM shipments s
+        JOIN shipment_items si ON si.shipment_id = s.id
+        JOIN products p ON p.id = si.product_id
+        WHERE s.id = ANY(?)
+        GROUP BY s.destination_id
+    """;
+
+    private static final String FIND_REQUEST_SHIPMENTS = "SELECT id FROM shipments WHERE request_id = ?";
+
+    private static final String DELETE_SHIPMENT_ITEMS = "DELETE FROM shipment_items WHERE shipment_id = ANY(?)";
+    private static final String DELETE_SHIPMENTS = "DELETE FROM shipments WHERE id = ANY(?)";
+
+    /*
+     * Compaction of the single-item shipments older versions wrote for each move. Those rows
+     * carry no request_id, but each plan was applied in one transaction, so the items of one
+     * plan share the xmin of that transaction. Shipments whose items came from several
+     * transactions (already compacted, or edited since) are left alone, and a group spanning
+     * more than an hour is taken for an xid wraparound collision and skipped.
+     */
+    private static final String MERGE_LEGACY_SHIPMENT_ITEMS = """
+        WITH legacy AS (
+            SELECT s.id, s.source_id, s.destination_id, s.status, s.created_at,
+                   MIN(si.xmin::text::bigint) AS tx
+            FROM shipments s
+            JOIN shipment_items si ON si.shipment_id = s.id
+            WHERE s.request_id IS NULL AND s.created_by = ?
+            GROUP BY s.id
+            HAVING COUNT(DISTINCT si.xmin::text) = 1
+        ),
+        groups AS (
+            SELECT id, source_id, destination_id, status,
+                   FIRST_VALUE(id) OVER ordered AS keeper_id,
+                   FIRST_VALUE(created_at) OVER ordered AS keeper_created_at,
+                   MAX(created_at) OVER plan - MIN(created_at) OVER plan AS span
+            FROM legacy
+            WINDOW plan AS (PARTITION BY tx, source_id, destination_id, status),
+                   ordered AS (plan ORDER BY id)
+        )
+        UPDATE shipment_items si
+        SET shipment_id = g.keeper_id
+        FROM groups g
+        WHERE si.shipment_id = g.id AND g.id <> g.keeper_id AND g.span < INTERVAL '1 hour'
+        RETURNING g.id, g.keeper_id, g.keeper_created_at, g.source_id, g.destination_id, g.status,
+                  si.product_id, si.quantity
+    """;
+
+    // Shipments page newest first, joined with its items in the same round trip
+    private static final String SHIPMENT_PAGE = """
+        SELECT s.id, s.source_id, s.destination_id, s.status, s.created_at, si.product_id, si.quantity
+        FROM (
+            SELECT id, source_id, destination_id, status, created_at
+            FROM shipments
+            WHERE (CAST(? AS BIGINT) IS NULL OR id < ?)
+              AND (CAST(? AS VARCHAR) IS NULL OR status = ?)
+              AND (CAST(? AS BIGINT) IS NULL OR destination_id = ?)
+            ORDER BY id DESC
+            LIMIT ?
+        ) s
+        LEFT JOIN shipment_items si ON si.shipment_id = s.id
+        ORDER BY s.id DESC, si.id
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record ShipmentRow(long destinationId, long productId, int quantity) {}
+
+    /**
+     * @param createdIds            IDs of the shipments created by the call
+     * @param shipmentByDestination shipment that received the items, by destination warehouse
+     */
+    public record InsertedShipments(long[] createdIds, Map<Long, Long> shipmentByDestination) {}
+
+    /**
+     * Writes the rows as one shipment per destination. Destinations that already have a
+     * shipment for this plan (earlier batches of a streamed plan) get the items appended.
+     *
+     * @return the shipments created by this call and the shipment used for each destination
+     */
+    public InsertedShipments insertShipments(String requestId, long sourceId, String status, String createdBy,
+                                  List<ShipmentRow> rows) {
+        if (rows.isEmpty()) {
+            return new InsertedShipments(new long[0], Map.of());
+        }
+
+        Map<Long, Long> shipmentByDestination = new LinkedHashMap<>();
+        for (ShipmentRow row : rows) {
+            shipmentByDestination.put(row.destinationId(), null);
+        }
+        shipmentByDestination.putAll(findPlanShipments(requestId, sourceId, status, shipmentByDestination.keySet()));
+
+        List<Long> newDestinations = new ArrayList<>();
+        shipmentByDestination.forEach((destinationId, shipmentId) -> {
+            if (shipmentId == null) {
+                newDestinations.add(destinationId);
+            }
+        });
+
+        long[] ids = allocateShipmentIds(newDestinations.size());
+        for (int i = 0; i < ids.length; i++) {
+            shipmentByDestination.put(newDestinations.get(i), ids[i]);
+        }
+
+        if (ids.length > 0) {
+            Long[] newShipmentIds = Arrays.stream(ids).boxed().toArray(Long[]::new);
+            Long[] destinationIds = newDestinations.toArray(Long[]::new);
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+            jdbcTemplate.update(INSERT_SHIPMENTS, ps -> {
+                Connection con = ps.getConnection();
+                ps.setString(1, requestId);
+                ps.setLong(2, sourceId);
+                ps.setString(3, status);
+                ps.setString(4, createdBy);
+                ps.setTimestamp(5, now);
+                ps.setString(6, createdBy);
+                ps.setTimestamp(7, now);
+                ps.setArray(8, bigintArray(con, newShipmentIds));
+                ps.setArray(9, bigintArray(con, destinationIds));
+            });
+        }
+
+        int n = rows.size();
+        Long[] itemShipmentIds = new Long[n];
+        Long[] productIds = new Long[n];
+        Integer[] quantities = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            ShipmentRow row = rows.get(i);
+            itemShipmentIds[i] = shipmentByDestination.get(row.destinationId());
+            productIds[i] = row.productId();
+            quantities[i] = row.quantity();
+        }
+
+        jdbcTemplate.update(INSERT_SHIPMENT_ITEMS, ps -> {
+            Connection con = ps.getConnection();
+            ps.setArray(1, bigintArray(con, itemShipmentIds));
+            ps.setArray(2, bigintArray(con, productIds));
+            ps.setArray(3, con.createArrayOf("integer", quantities));
+        });
+
+        return new InsertedShipments(ids, shipmentByDestination);
+    }
+
+    /**
+     * @param removedIds shipments emptied and deleted by the compaction
+     * @param extended   shipments that received the moved items, with only those items listed
+     */
+    public record Compaction(long[] removedIds, List<ShipmentResponse> extended) {}
+
+    /**
+     * Moves the items of legacy shipments that one plan wrote for the same route onto the
+     * lowest shipment ID and deletes the emptied shipments.
+     */
+    public Compaction compactPlanShipments(String engineUser) {
+        Set<Long> emptied = new LinkedHashSet<>();
+        Map<Long, ShipmentResponse> extended = new LinkedHashMap<>();
+        jdbcTemplate.query(MERGE_LEGACY_SHIPMENT_ITEMS, ps -> ps.setString(1, engineUser), rs -> {
+            emptied.add(rs.getLong("id"));
+            long keeperId = rs.getLong("keeper_id");
+            ShipmentResponse keeper = extended.get(keeperId);
+            if (keeper == null) {
+                Timestamp createdAt = rs.getTimestamp("keeper_created_at");
+                keeper = new ShipmentResponse(keeperId, rs.getLong("source_id"), rs.getLong("destination_id"),
+                        rs.getString("status"), createdAt != null ? createdAt.toLocalDateTime() : null,
+                        new ArrayList<>());
+                extended.put(keeperId, keeper);
+            }
+            keeper.items().add(new ItemResponse("Product-" + rs.getLong("product_id"), rs.getInt("quantity")));
+        });
+
+        Long[] removed = emptied.toArray(Long[]::new);
+        if (removed.length > 0) {
+            jdbcTemplate.update(DELETE_SHIPMENTS, ps -> ps.setArray(1, bigintArray(ps.getConnection(), removed)));
+        }
+        return new Compaction(emptied.stream().mapToLong(Long::longValue).toArray(),
+                new ArrayList<>(extended.values()));
+    }
+
+    public List<ShipmentResponse> findPage(Long afterId, String status, Long destinationId, int limit) {
+        Map<Long, ShipmentResponse> page = new LinkedHashMap<>();
+        jdbcTemplate.query(SHIPMENT_PAGE,
+                ps -> {
+                    ps.setObject(1, afterId, Types.BIGINT);
+                    ps.setObject(2, afterId, Types.BIGINT);
+                    ps.setString(3, status);
+                    ps.setString(4, status);
+                    ps.setObject(5, destinationId, Types.BIGINT);
+                    ps.setObject(6, destinationId, Types.BIGINT);
+                    ps.setInt(7, limit);
+                },
+                rs -> {
+                    long id = rs.getLong("id");
+                    ShipmentResponse shipment = page.get(id);
+                    if (shipment == null) {
+                        Timestamp createdAt = rs.getTimestamp("created_at");
+                        shipment = new ShipmentResponse(
+                                id,
+                                rs.getLong("source_id"),
+                                rs.getLong("destination_id"),
+                                rs.getString("status"),
+                                createdAt != null ? createdAt.toLocalDateTime() : null,
+                                new ArrayList<>());
+                        page.put(id, shipment);
+                    }
+                    long productId = rs.getLong("product_id");
+                    if (!rs.wasNull()) {
+                        shipment.items().add(new ItemResponse("Product-" + productId, rs.getInt("quantity")));
+                    }
+                });
+        return new ArrayList<>(page.values());
+    }
+
+    public long[] findRequestShipmentIds(String requestId) {
+        return jdbcTemplate.queryForList(FIND_REQUEST_SHIPMENTS, Long.class, requestId).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    /**
+     * Deletes the given shipments and their items.
+     *
+     * @return the deleted volume per destination warehouse
+     */
+    public Map<Long, Double> deleteShipments(long[] ids) {
+        Long[] boxed = Arrays.stream(ids).boxed().toArray(Long[]::new);
+
+        Map<Long, Double> volumes = new HashMap<>();
+        jdbcTemplate.query(VOLUME_BY_DESTINATION,
+                ps -> ps.setArray(1, bigintArray(ps.getConnection(), boxed)),
+                rs -> {
+                    volumes.put(rs.getLong("destination_id"), rs.getDouble("volume"));
+                });
+
+        jdbcTemplate.update(DELETE_SHIPMENT_ITEMS, ps -> ps.setArray(1, bigintArray(ps.getConnection(), boxed)));
+        jdbcTemplate.update(DELETE_SHIPMENTS, ps -> ps.setArray(1, bigintArray(ps.getConnection(), boxed)));
+        return volumes;
+    }
+
+    private Map<Long, Long> findPlanShipments(String requestId, long sourceId, String status,
+                                              Collection<Long> destinationIds) {
+        Map<Long, Long> found = new HashMap<>();
+        if (requestId == null) {
+            return found;
+        }
+        Long[] destinations = destinationIds.toArray(Long[]::new);
+        jdbcTemplate.query(FIND_PLAN_SHIPMENTS,
+                ps -> {
+                    ps.setString(1, requestId);
+                    ps.setLong(2, sourceId);
+                    ps.setString(3, status);
+                    ps.setArray(4, bigintArray(ps.getConnection(), destinations));
+                },
+                rs -> {
+                    found.put(rs.getLong("destination_id"), rs.getLong("id"));
+                });
+        return found;
+    }
+
+    private long[] allocateShipmentIds(int count) {
+        if (count == 0) {
+            return new long[0];
+        }
+        return jdbcTemplate.queryForList(ALLOCATE_SHIPMENT_IDS, Long.class, count).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private static Array bigintArray(Connection con, Long[] values) throws SQLException {
+        return con.createArrayOf("bigint", values);
+    }
+}
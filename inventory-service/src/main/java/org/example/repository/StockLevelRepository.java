@@ -1,7 +1,26 @@
 package org.example.repository;
 
+import org.example.dto.StockLevelResponse;
 import org.example.entity.StockLevel;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface StockLevelRepository extends JpaRepository<StockLevel, Long> {
+    // Ordered by the (warehouse_id, product_id) primary key; the cursor is the last key seen
+    @Query("SELECT new org.example.dto.StockLevelResponse(s.id.warehouseId, s.id.productId, s.quantity) " +
+            "FROM StockLevel s " +
+            "WHERE (:warehouseId IS NULL OR s.id.warehouseId = :warehouseId) " +
+            "AND (:productId IS NULL OR s.id.productId = :productId) " +
+            "AND (:afterWarehouseId IS NULL OR s.id.warehouseId > :afterWarehouseId " +
+            "     OR (s.id.warehouseId = :afterWarehouseId AND s.id.productId > :afterProductId)) " +
+            "ORDER BY s.id.warehouseId, s.id.productId")
+    List<StockLevelResponse> findPage(@Param("warehouseId") Long warehouseId,
+                                      @Param("productId") Long productId,
+                                      @Param("afterWarehouseId") Long afterWarehouseId,
+                                      @Param("afterProductId") Long afterProductId,
+                                      Pageable pageable);
 }
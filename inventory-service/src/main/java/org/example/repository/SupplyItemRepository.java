@@ -1,10 +1,13 @@
 package org.example.repository;
 
+import org.example.dto.WarehouseVolume;
 import org.example.entity.SupplyItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+
 public interface SupplyItemRepository extends JpaRepository<SupplyItem, Long> {
     @Query(value = """
         SELECT COALESCE(SUM(si.quantity * p.volume_m3), 0)
@@ -15,4 +18,24 @@ public interface SupplyItemRepository extends JpaRepository<SupplyItem, Long> {
           AND s.status = 'RECEIVED'
     """, nativeQuery = true)
     Double calculatePendingVolumeByWarehouse(@Param("warehouseId") Long warehouseId);
+
+    @Query(value = """
+        SELECT s.warehouse_id AS warehouseId,
+               s.status AS status,
+               COALESCE(SUM(si.quantity * p.volume_m3), 0) AS volume
+        FROM supply_items si
+        JOIN supplies s ON si.supply_id = s.id
+        JOIN products p ON si.product_id = p.id
+        WHERE s.status = 'RECEIVED'
+        GROUP BY s.warehouse_id, s.status
+    """, nativeQuery = true)
+    List<WarehouseVolume> calculatePendingVolumeByWarehouses();
+
+    @Query(value = """
+        SELECT COALESCE(SUM(si.quantity * p.volume_m3), 0)
+        FROM supply_items si
+        JOIN products p ON si.product_id = p.id
+        WHERE si.supply_id = :supplyId
+    """, nativeQuery = true)
+    Double calculateVolumeBySupply(@Param("supplyId") Long supplyId);
 }
@@ -1,9 +1,46 @@
 package org.example.repository;
 
+import org.example.dto.SupplyResponse;
+import org.example.dto.SupplyState;
 import org.example.entity.Supply;
+import org.example.entity.SupplyStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface SupplyRepository extends JpaRepository<Supply, Long> {
-}
\ No newline at end of file
+    // Newest first: the next page continues below afterId
+    @Query("SELECT new org.example.dto.SupplyResponse(s.id, s.warehouseId, s.status, s.arrivalDate, s.createdBy, s.createdAt) " +
+            "FROM Supply s " +
+            "WHERE (:afterId IS NULL OR s.id < :afterId) " +
+            "AND (:status IS NULL OR s.status = :status) " +
+            "AND (:warehouseId IS NULL OR s.warehouseId = :warehouseId) " +
+            "ORDER BY s.id DESC")
+    List<SupplyResponse> findPage(@Param("afterId") Long afterId,
+                                  @Param("status") SupplyStatus status,
+                                  @Param("warehouseId") Long warehouseId,
+                                  Pageable pageable);
+
+    @Query("""
+        SELECT s.id AS id, s.warehouseId AS warehouseId, s.status AS status,
+               COALESCE(SUM(i.quantity), 0) AS units, COALESCE(SUM(i.quantity * p.volumeM3), 0.0) AS volumeM3
+        FROM Supply s LEFT JOIN s.items i LEFT JOIN Product p ON p.id = i.productId
+        GROUP BY s.id, s.warehouseId, s.status
+    """)
+    List<SupplyState> findAllStates();
+
+    @Query("""
+        SELECT s.id AS id, s.warehouseId AS warehouseId, s.status AS status,
+               COALESCE(SUM(i.quantity), 0) AS units, COALESCE(SUM(i.quantity * p.volumeM3), 0.0) AS volumeM3
+        FROM Supply s LEFT JOIN s.items i LEFT JOIN Product p ON p.id = i.productId
+        WHERE s.id IN :ids
+        GROUP BY s.id, s.warehouseId, s.status
+    """)
+    List<SupplyState> findStates(@Param("ids") Collection<Long> ids);
+}
@@ -1,9 +1,50 @@
 package org.example.repository;
 
+import org.example.dto.WarehouseResponse;
+import org.example.dto.WarehouseUtilization;
 import org.example.entity.Warehouse;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface WarehouseRepository extends JpaRepository<Warehouse, Long> {
-}
\ No newline at end of file
+    @Query("SELECT w.id FROM Warehouse w WHERE w.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new org.example.dto.WarehouseResponse(w.id, w.totalCapacity, w.createdBy, w.createdAt) " +
+            "FROM Warehouse w " +
+            "WHERE (:afterId IS NULL OR w.id > :afterId) " +
+            "ORDER BY w.id")
+    List<WarehouseResponse> findPage(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Same figures as the capacity ledger, computed in one statement for consistent snapshots
+    @Query(value = """
+        SELECT w.id AS warehouseId,
+               w.total_capacity AS totalCapacity,
+               COALESCE(allocated.volume, 0) + COALESCE(pending.volume, 0) AS usedVolume
+        FROM warehouses w
+        LEFT JOIN (
+            SELECT s.destination_id AS warehouse_id, SUM(si.quantity * p.volume_m3) AS volume
+            FROM shipment_items si
+            JOIN shipments s ON si.shipment_id = s.id
+            JOIN products p ON si.product_id = p.id
+            GROUP BY s.destination_id
+        ) allocated ON allocated.warehouse_id = w.id
+        LEFT JOIN (
+            SELECT s.warehouse_id, SUM(si.quantity * p.volume_m3) AS volume
+            FROM supply_items si
+            JOIN supplies s ON si.supply_id = s.id
+            JOIN products p ON si.product_id = p.id
+            WHERE s.status = 'RECEIVED'
+            GROUP BY s.warehouse_id
+        ) pending ON pending.warehouse_id = w.id
+        ORDER BY w.id
+    """, nativeQuery = true)
+    List<WarehouseUtilization> findUtilization();
+}
@@ -0,0 +1,36 @@
+package org.example.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of request IDs whose plans are known to be committed, so hot
+ * duplicate deliveries from the engine are answered without a database hit.
+ * A miss says nothing; {@code plan_applications} stays the source of truth.
+ */
+@Component
+public class AppliedPlanCache {
+
+    private final Map<String, Boolean> applied;
+
+    public AppliedPlanCache(@Value("${inventory.plan-apply.applied-cache-size:10000}") int maxSize) {
+        this.applied = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    public boolean isApplied(String requestId) {
+        return applied.get(requestId) != null;
+    }
+
+    public void markApplied(String requestId) {
+        TransactionCallbacks.afterCommit(() -> applied.put(requestId, Boolean.TRUE));
+    }
+}
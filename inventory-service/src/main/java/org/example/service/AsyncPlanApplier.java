@@ -0,0 +1,164 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.entity.PlanApplicationStatus;
+import org.example.grpc.DistributionPlan;
+import org.example.repository.PlanApplicationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Async plan application: a plan is stored durably in {@code plan_applications} and
+ * acknowledged, then applied by a fixed pool of workers. Admission is bounded by
+ * workers + queue capacity; beyond that callers are told to retry later.
+ * QUEUED plans left over from a previous run are picked up again on startup.
+ */
+@Slf4j
+@Service
+public class AsyncPlanApplier {
+
+    private final PlanApplicationRepository planApplicationRepository;
+    private final DistributionService distributionService;
+    private final AppliedPlanCache appliedPlanCache;
+    private final CalculationStatusService calculationStatusService;
+
+    private final boolean enabled;
+    private final long retryAfterMs;
+    private final Semaphore admission;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer waitTimer;
+    private final Timer applyTimer;
+    private final Counter rejected;
+
+    public AsyncPlanApplier(PlanApplicationRepository planApplicationRepository,
+                            DistributionService distributionService,
+                            AppliedPlanCache appliedPlanCache,
+                            CalculationStatusService calculationStatusService,
+                            MeterRegistry meterRegistry,
+                            @Value("${inventory.plan-apply.mode:sync}") String mode,
+                            @Value("${inventory.plan-apply.workers:4}") int workers,
+                            @Value("${inventory.plan-apply.queue-capacity:64}") int queueCapacity,
+                            @Value("${inventory.plan-apply.retry-after-ms:2000}") long retryAfterMs) {
+        this.planApplicationRepository = planApplicationRepository;
+        this.distributionService = distributionService;
+        this.appliedPlanCache = appliedPlanCache;
+        this.calculationStatusService = calculationStatusService;
+        this.enabled = "async".equalsIgnoreCase(mode);
+        this.retryAfterMs = retryAfterMs;
+        this.admission = new Semaphore(workers + queueCapacity);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "plan-apply-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        Gauge.builder("inventory.plan.apply.queue.depth", executor, e -> e.getQueue().size())
+                .description("Plans acknowledged and waiting for a worker")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("inventory.plan.apply.wait")
+                .description("Time between acknowledging a plan and a worker picking it up")
+                .register(meterRegistry);
+        this.applyTimer = Timer.builder("inventory.plan.apply.duration")
+                .description("Time spent writing a queued plan")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("inventory.plan.apply.rejected")
+                .description("Plans refused because the apply queue was full")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    /**
+     * Records the plan and queues it for a worker. A plan that failed earlier is queued again.
+     *
+     * @return false if the queue is full and nothing was recorded
+     */
+    public boolean submit(DistributionPlan plan) {
+        if (appliedPlanCache.isApplied(plan.getRequestId())) {
+            return true;
+        }
+        if (!admission.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+
+        int admitted;
+        try {
+            admitted = planApplicationRepository.admit(plan.getRequestId(),
+                    plan.getSupplyId() == 0 ? null : plan.getSupplyId(),
+                    distributionService.resolveSourceWarehouseId(plan.getSourceId()),
+                    plan.toByteArray());
+        } catch (RuntimeException e) {
+            admission.release();
+            throw e;
+        }
+        if (admitted == 0) {
+            log.info("Plan {} was already received, not queueing it again", plan.getRequestId());
+            admission.release();
+            return true;
+        }
+
+        enqueue(plan.getRequestId(), true);
+        return true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverQueuedPlans() {
+        if (!enabled) {
+            return;
+        }
+
+        List<String> pending = planApplicationRepository.findRequestIdsByStatus(PlanApplicationStatus.QUEUED);
+        if (!pending.isEmpty()) {
+            log.info("Re-queueing {} plans left over from a previous run", pending.size());
+            pending.forEach(requestId -> enqueue(requestId, false));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void enqueue(String requestId, boolean admitted) {
+        long queuedAt = System.nanoTime();
+        executor.execute(() -> {
+            waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                applyTimer.record(() -> distributionService.applyQueuedPlan(requestId));
+            } catch (Exception e) {
+                log.error("Failed to apply queued plan {}", requestId, e);
+                planApplicationRepository.updateStatus(requestId, PlanApplicationStatus.FAILED);
+                calculationStatusService.finished(requestId);
+            } finally {
+                if (admitted) {
+                    admission.release();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.CalculationPartitions;
+import org.example.dto.SizeClass;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Depth and consumer count of every calculation partition queue, sampled from the broker
+ * on a schedule rather than on each scrape. A growing queue next to idle ones points at a
+ * hot hub, or with lanes at a backlog of one size class; a queue without consumers is not
+ * being calculated at all.
+ */
+@Slf4j
+@Service
+public class CalculationQueueMonitor {
+
+    private record Sample(String queue, AtomicLong depth, AtomicLong consumers) {}
+
+    private final AmqpAdmin amqpAdmin;
+    private final List<Sample> samples = new ArrayList<>();
+
+    public CalculationQueueMonitor(AmqpAdmin amqpAdmin, CalculationPartitions partitions, MeterRegistry meterRegistry) {
+        this.amqpAdmin = amqpAdmin;
+        for (int partition = 0; partition < partitions.count(); partition++) {
+            for (SizeClass lane : partitions.lanes()) {
+                Sample sample = new Sample(partitions.queueName(partition, lane), new AtomicLong(), new AtomicLong());
+                samples.add(sample);
+                Tags tags = Tags.of("queue", sample.queue(),
+                        "partition", String.valueOf(partition),
+                        "size_class", lane.name().toLowerCase());
+                Gauge.builder("inventory.calculation.queue.depth", sample.depth(), AtomicLong::get)
+                        .description("Calculation requests waiting in the partition lane")
+                        .tags(tags)
+                        .register(meterRegistry);
+                Gauge.builder("inventory.calculation.queue.consumers", sample.consumers(), AtomicLong::get)
+                        .description("Engine consumers attached to the partition lane")
+                        .tags(tags)
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.calculation.queue-sample-interval-ms:15000}")
+    public void sample() {
+        try {
+            for (Sample sample : samples) {
+                // Null until the queue is declared, which happens on the first connection
+                QueueInformation info = amqpAdmin.getQueueInfo(sample.queue());
+                if (info != null) {
+                    sample.depth().set(info.getMessageCount());
+                    sample.consumers().set(info.getConsumerCount());
+                }
+            }
+        } catch (AmqpException e) {
+            // The outbox metrics already report an unreachable broker
+            log.debug("Could not sample calculation queues: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.CalculationStatusResponse;
+import org.example.entity.PlanApplication;
+import org.example.repository.PlanApplicationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Status of a calculation by request ID, from its {@code plan_applications} record. Until
+ * the engine's plan arrives there is no record, and a request triggered on this instance
+ * reports QUEUED. Waiting callers are parked as async requests and woken once the plan
+ * is committed as applied or failed; without a wake-up they get the current status when
+ * their wait runs out (for example when the plan was applied by another instance).
+ */
+@Slf4j
+@Service
+public class CalculationStatusService {
+
+    private final PlanApplicationRepository planApplicationRepository;
+    private final PipelineTimeline pipelineTimeline;
+    private final InFlightCalculations inFlightCalculations;
+    private final long maxWaitMs;
+
+    private final Map<String, Set<DeferredResult<ResponseEntity<CalculationStatusResponse>>>> waiters =
+            new ConcurrentHashMap<>();
+
+    public CalculationStatusService(PlanApplicationRepository planApplicationRepository,
+                                    PipelineTimeline pipelineTimeline,
+                                    InFlightCalculations inFlightCalculations,
+                                    @Value("${inventory.calculation.max-wait-ms:30000}") long maxWaitMs) {
+        this.planApplicationRepository = planApplicationRepository;
+        this.pipelineTimeline = pipelineTimeline;
+        this.inFlightCalculations = inFlightCalculations;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public Optional<CalculationStatusResponse> status(String requestId) {
+        Optional<PlanApplication> application = planApplicationRepository.findById(requestId);
+        if (application.isPresent()) {
+            return application.map(CalculationStatusService::toResponse);
+        }
+        if (pipelineTimeline.contains(requestId)) {
+            return Optional.of(new CalculationStatusResponse(requestId, CalculationStatusResponse.Status.QUEUED,
+                    0, 0, null));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Answers at once when the calculation is finished or unknown, otherwise when it
+     * finishes or after {@code wait} (capped at the configured maximum), whichever is first.
+     */
+    public DeferredResult<ResponseEntity<CalculationStatusResponse>> await(String requestId, Duration wait) {
+        long timeoutMs = Math.min(Math.max(wait.toMillis(), 0), maxWaitMs);
+        DeferredResult<ResponseEntity<CalculationStatusResponse>> result = new DeferredResult<>(timeoutMs);
+
+        // Registered before the status is read, so a plan finishing in between still wakes us
+        waiters.compute(requestId, (id, parked) -> {
+            Set<DeferredResult<ResponseEntity<CalculationStatusResponse>>> set =
+                    parked != null ? parked : ConcurrentHashMap.newKeySet();
+            set.add(result);
+            return set;
+        });
+        result.onCompletion(() -> waiters.computeIfPresent(requestId, (id, parked) -> {
+            parked.remove(result);
+            return parked.isEmpty() ? null : parked;
+        }));
+        result.onTimeout(() -> result.setResult(toEntity(status(requestId))));
+
+        Optional<CalculationStatusResponse> current = status(requestId);
+        if (timeoutMs == 0 || current.isEmpty() || current.get().status().isFinal()) {
+            result.setResult(toEntity(current));
+        }
+        return result;
+    }
+
+    /**
+     * Wakes the callers waiting on the request once the surrounding transaction commits,
+     * and lets the next trigger for its supply start a new calculation.
+     */
+    public void finished(String requestId) {
+        TransactionCallbacks.afterCommit(() -> {
+            inFlightCalculations.release(requestId);
+            Set<DeferredResult<ResponseEntity<CalculationStatusResponse>>> parked = waiters.remove(requestId);
+            if (parked == null || parked.isEmpty()) {
+                return;
+            }
+            ResponseEntity<CalculationStatusResponse> response = toEntity(status(requestId));
+            parked.forEach(result -> result.setResult(response));
+            log.debug("Woke {} callers waiting on calculation {}", parked.size(), requestId);
+        });
+    }
+
+    private static ResponseEntity<CalculationStatusResponse> toEntity(Optional<CalculationStatusResponse> status) {
+        return status.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static CalculationStatusResponse toResponse(PlanApplication application) {
+        CalculationStatusResponse.Status status = switch (application.getStatus()) {
+            case QUEUED -> CalculationStatusResponse.Status.QUEUED;
+            case IN_PROGRESS -> CalculationStatusResponse.Status.APPLYING;
+            case APPLIED -> CalculationStatusResponse.Status.DONE;
+            case FAILED -> CalculationStatusResponse.Status.FAILED;
+        };
+        return new CalculationStatusResponse(application.getRequestId(), status,
+                application.getMovesApplied(), application.getUnallocatedItems(), application.getLastModifiedAt());
+    }
+}
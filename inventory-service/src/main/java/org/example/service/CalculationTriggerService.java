@@ -0,0 +1,86 @@
+package org.example.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.CalculationLanes;
+import org.example.dto.CalculationTriggerResult;
+import org.example.dto.CalculationTriggerResult.Outcome;
+import org.example.dto.DistributionEvent;
+import org.example.dto.SizeClass;
+import org.example.entity.SupplyStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Queues calculations for supplies. Supplies that are unknown or already processed are
+ * answered from {@link SupplyStatusView}; a supply whose calculation is still pending
+ * gets that request back instead of a second calculation. The rest are queued together,
+ * each with the size class of its supply.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CalculationTriggerService {
+
+    private final SupplyStatusView supplyStatusView;
+    private final InFlightCalculations inFlightCalculations;
+    private final EventPublisher eventPublisher;
+    private final PipelineTimeline pipelineTimeline;
+    private final CalculationLanes calculationLanes;
+
+    /**
+     * @return one result per distinct supply ID, in request order
+     */
+    public List<CalculationTriggerResult> trigger(List<Long> supplyIds) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(supplyIds));
+        Map<Long, SupplyStatusView.Supply> supplies = supplyStatusView.find(distinct);
+
+        List<CalculationTriggerResult> results = new ArrayList<>(distinct.size());
+        List<String> reserved = new ArrayList<>();
+        List<DistributionEvent.DistributionEventBuilder> events = new ArrayList<>();
+        for (Long supplyId : distinct) {
+            SupplyStatusView.Supply supply = supplies.get(supplyId);
+            if (supply == null) {
+                results.add(new CalculationTriggerResult(supplyId, null, Outcome.NOT_FOUND));
+                continue;
+            }
+            if (supply.status() == SupplyStatus.PROCESSED) {
+                results.add(new CalculationTriggerResult(supplyId, null, Outcome.ALREADY_PROCESSED));
+                continue;
+            }
+
+            String requestId = UUID.randomUUID().toString();
+            String pending = inFlightCalculations.reserve(supplyId, requestId);
+            if (pending != null) {
+                results.add(new CalculationTriggerResult(supplyId, pending, Outcome.ALREADY_QUEUED));
+                continue;
+            }
+            SizeClass sizeClass = calculationLanes.classify(supply.units(), supply.volumeM3());
+            reserved.add(requestId);
+            pipelineTimeline.triggered(requestId, sizeClass);
+            results.add(new CalculationTriggerResult(supplyId, requestId, Outcome.QUEUED));
+            events.add(DistributionEvent.builder()
+                    .requestId(requestId)
+                    .supplyId(supplyId)
+                    .sourceWarehouseId(supply.warehouseId())
+                    .sizeClass(sizeClass));
+        }
+
+        if (!events.isEmpty()) {
+            try {
+                eventPublisher.sendCalculationRequests(events);
+            } catch (RuntimeException e) {
+                // Nothing was queued, so the next trigger must not be told it is pending
+                reserved.forEach(inFlightCalculations::release);
+                throw e;
+            }
+        }
+        log.debug("Triggered {} calculations for {} supplies", events.size(), distinct.size());
+        return results;
+    }
+}
@@ -0,0 +1,383 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.WarehouseStatDto;
+import org.example.dto.WarehouseVolume;
+import org.example.entity.Warehouse;
+import org.example.repository.ShipmentItemRepository;
+import org.example.repository.SupplyItemRepository;
+import org.example.repository.WarehouseRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory view of allocated (shipped) and pending (received supply) volume per warehouse.
+ * Seeded once from the database and kept current by the write paths, so the stats
+ * endpoint never has to run aggregate queries. Deltas are applied after commit only.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CapacityLedger {
+
+    private static final double DRIFT_TOLERANCE_M3 = 1e-6;
+    private static final String UTILIZATION_GAUGE = "inventory.warehouse.utilization";
+
+    private final WarehouseRepository warehouseRepository;
+    private final ShipmentItemRepository shipmentItemRepository;
+    private final SupplyItemRepository supplyItemRepository;
+    private final ChangeFeed changeFeed;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentSkipListMap<Long, Account> accounts = new ConcurrentSkipListMap<>();
+    // Bumped before each ledger write commits, so reconcile also sees writes still committing
+    private final AtomicLong mutations = new AtomicLong();
+    private final AtomicInteger committing = new AtomicInteger();
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock seedLock = new ReentrantLock();
+    // Deltas share it, reconcile corrections hold it exclusively
+    private final ReentrantReadWriteLock correctionLock = new ReentrantReadWriteLock();
+    private volatile boolean seeded;
+
+    @PostConstruct
+    void registerMeters() {
+        Gauge.builder("inventory.warehouse.capacity.total", accounts, CapacityLedger::totalCapacity)
+                .description("Capacity of all warehouses")
+                .baseUnit("m3")
+                .register(meterRegistry);
+        Gauge.builder("inventory.warehouse.used.total", accounts, CapacityLedger::totalUsed)
+                .description("Allocated and pending volume across all warehouses")
+                .baseUnit("m3")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        // A lock rather than synchronized: the seed queries would pin a virtual thread's carrier
+        seedLock.lock();
+        try {
+            if (seeded) {
+                return;
+            }
+            State state = loadState();
+            state.capacities.forEach((id, capacity) -> account(id).totalCapacity = capacity);
+            state.allocated.forEach((id, byStatus) -> byStatus.forEach((status, volume) ->
+                    account(id).allocated(status).add(volume)));
+            state.pending.forEach((id, volume) -> account(id).pending.add(volume));
+            seeded = true;
+        } finally {
+            seedLock.unlock();
+        }
+        log.info("Capacity ledger seeded for {} warehouses", accounts.size());
+    }
+
+    public List<WarehouseStatDto> getWarehouseStats() {
+        if (!seeded) {
+            seed();
+        }
+
+        List<WarehouseStatDto> stats = new ArrayList<>(accounts.size());
+        for (Map.Entry<Long, Account> entry : accounts.entrySet()) {
+            stats.add(toStat(entry.getKey(), entry.getValue()));
+        }
+        return stats;
+    }
+
+    /**
+     * Publishes the current stats of warehouses touched since the last call as one
+     * capacity event, so a large plan produces one event per interval instead of one per write.
+     */
+    @Scheduled(fixedDelayString = "${inventory.change-feed.capacity-interval-ms:1000}")
+    public void publishChanges() {
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        List<WarehouseStatDto> stats = new ArrayList<>();
+        for (Long id : List.copyOf(changed)) {
+            changed.remove(id);
+            Account account = accounts.get(id);
+            if (account != null) {
+                stats.add(toStat(id, account));
+            }
+        }
+        if (!stats.isEmpty()) {
+            changeFeed.publish(ChangeFeed.Type.CAPACITY_CHANGED, stats);
+        }
+    }
+
+    /**
+     * Marks the ledger's place in the commit order, for {@link #unchangedSince}.
+     *
+     * @return the mark, or -1 before the seed or while a ledger write is between its
+     *         commit and its update
+     */
+    public long writeMark() {
+        long mark = mutations.get();
+        return !seeded || committing.get() > 0 ? -1 : mark;
+    }
+
+    /**
+     * @return true if no ledger write started committing since the mark was taken. The
+     *         ledger then matches any database snapshot taken in between.
+     */
+    public boolean unchangedSince(long mark) {
+        return mark >= 0 && mutations.get() == mark;
+    }
+
+    public void recordWarehouse(Long warehouseId, double totalCapacity) {
+        afterCommit(warehouseId, () -> account(warehouseId).totalCapacity = totalCapacity);
+    }
+
+    public void recordAllocation(Long warehouseId, String status, double volume) {
+        afterCommit(warehouseId, () -> account(warehouseId).allocated(status).add(volume));
+    }
+
+    public void recordShipmentStatusChange(Long warehouseId, String oldStatus, String newStatus, double volume) {
+        afterCommit(warehouseId, () -> {
+            Account account = account(warehouseId);
+            account.allocated(oldStatus).add(-volume);
+            account.allocated(newStatus).add(volume);
+        });
+    }
+
+    public void recordSupplyReceived(Long warehouseId, double volume) {
+        afterCommit(warehouseId, () -> account(warehouseId).pending.add(volume));
+    }
+
+    public void recordSupplyProcessed(Long warehouseId, double volume) {
+        afterCommit(warehouseId, () -> account(warehouseId).pending.add(-volume));
+    }
+
+    /**
+     * Compares the ledger against fresh aggregates and corrects any drift.
+     * Skipped when a write commits while the aggregates are being read, or is still
+     * between its commit and its ledger update when the read starts. Corrections add
+     * the difference under the exclusive side of the lock that deltas take, so a delta
+     * is never lost to a correction.
+     */
+    @Scheduled(fixedDelayString = "${inventory.capacity-ledger.reconcile-interval-ms:60000}",
+            initialDelayString = "${inventory.capacity-ledger.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        if (!seeded) {
+            return;
+        }
+
+        long mark = writeMark();
+        if (mark < 0) {
+            log.debug("Capacity ledger reconcile skipped: writes committing");
+            return;
+        }
+        State state = loadState();
+
+        int drifted = 0;
+        correctionLock.writeLock().lock();
+        try {
+            // No delta can land between this check and the corrections
+            if (!unchangedSince(mark)) {
+                log.debug("Capacity ledger reconcile skipped: concurrent writes");
+                return;
+            }
+            for (Long id : state.capacities.keySet()) {
+                if (correct(id, state)) {
+                    drifted++;
+                }
+            }
+        } finally {
+            correctionLock.writeLock().unlock();
+        }
+        for (Long id : List.copyOf(accounts.keySet())) {
+            if (!state.capacities.containsKey(id)) {
+                accounts.remove(id);
+                meterRegistry.find(UTILIZATION_GAUGE).tag("warehouse", String.valueOf(id)).meters()
+                        .forEach(meterRegistry::remove);
+            }
+        }
+
+        if (drifted > 0) {
+            log.warn("Capacity ledger reconciled: {} of {} warehouses drifted", drifted, accounts.size());
+        }
+    }
+
+    /**
+     * Brings the account to the loaded state by adding the difference, per status.
+     *
+     * @return whether the account had drifted
+     */
+    private boolean correct(Long id, State state) {
+        Account account = account(id);
+        account.totalCapacity = state.capacities.get(id);
+
+        Map<String, Double> expectedByStatus = state.allocated.getOrDefault(id, Map.of());
+        double expectedAllocated = expectedByStatus.values().stream().mapToDouble(Double::doubleValue).sum();
+        double expectedPending = state.pending.getOrDefault(id, 0.0);
+
+        double allocatedDrift = expectedAllocated - account.allocatedVolume();
+        double pendingDrift = expectedPending - account.pending.sum();
+        if (Math.abs(allocatedDrift) <= DRIFT_TOLERANCE_M3 && Math.abs(pendingDrift) <= DRIFT_TOLERANCE_M3) {
+            return false;
+        }
+
+        log.warn("Capacity ledger drift for WH-{}: allocated {} m3, pending {} m3. Correcting.",
+                id, allocatedDrift, pendingDrift);
+        Set<String> statuses = new HashSet<>(expectedByStatus.keySet());
+        statuses.addAll(account.allocatedByStatus.keySet());
+        for (String status : statuses) {
+            DoubleAdder allocated = account.allocated(status);
+            allocated.add(expectedByStatus.getOrDefault(status, 0.0) - allocated.sum());
+        }
+        account.pending.add(pendingDrift);
+        changed.add(id);
+        return true;
+    }
+
+    private State loadState() {
+        State state = new State();
+        for (Warehouse w : warehouseRepository.findAll()) {
+            state.capacities.put(w.getId(), w.getTotalCapacity());
+        }
+        for (WarehouseVolume row : shipmentItemRepository.calculateUsedVolumeByWarehouseAndStatus()) {
+            state.allocated.computeIfAbsent(row.getWarehouseId(), id -> new HashMap<>())
+                    .merge(row.getStatus(), row.getVolume(), Double::sum);
+        }
+        for (WarehouseVolume row : supplyItemRepository.calculatePendingVolumeByWarehouses()) {
+            state.pending.merge(row.getWarehouseId(), row.getVolume(), Double::sum);
+        }
+        return state;
+    }
+
+    private static WarehouseStatDto toStat(Long warehouseId, Account account) {
+        return WarehouseStatDto.of(warehouseId, account.totalCapacity, account.usedVolume());
+    }
+
+    private Account account(Long warehouseId) {
+        Account account = accounts.get(warehouseId);
+        return account != null ? account : accounts.computeIfAbsent(warehouseId, this::openAccount);
+    }
+
+    private Account openAccount(Long warehouseId) {
+        // Reads the account through the map, so a gauge registered by a losing concurrent call stays correct
+        Gauge.builder(UTILIZATION_GAUGE, accounts, all -> utilization(all.get(warehouseId)))
+                .description("Share of the warehouse capacity taken by allocated and pending volume")
+                .tag("warehouse", String.valueOf(warehouseId))
+                .register(meterRegistry);
+        return new Account();
+    }
+
+    private static double utilization(Account account) {
+        if (account == null) {
+            return Double.NaN;
+        }
+        return account.totalCapacity > 0 ? account.usedVolume() / account.totalCapacity : 0;
+    }
+
+    private static double totalCapacity(Map<Long, Account> accounts) {
+        double sum = 0;
+        for (Account account : accounts.values()) {
+            sum += account.totalCapacity;
+        }
+        return sum;
+    }
+
+    private static double totalUsed(Map<Long, Account> accounts) {
+        double sum = 0;
+        for (Account account : accounts.values()) {
+            sum += account.usedVolume();
+        }
+        return sum;
+    }
+
+    private void afterCommit(Long warehouseId, Runnable update) {
+        // Without a transaction the write is already committed; callers that write keep a transaction open
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            mutations.incrementAndGet();
+            apply(warehouseId, update);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean counted;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                counted = true;
+                committing.incrementAndGet();
+                mutations.incrementAndGet();
+            }
+
+            @Override
+            public void afterCommit() {
+                apply(warehouseId, update);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (counted) {
+                    committing.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    private void apply(Long warehouseId, Runnable update) {
+        // Before seeding the database is the source of truth; the seed picks the change up.
+        if (seeded) {
+            correctionLock.readLock().lock();
+            try {
+                update.run();
+            } finally {
+                correctionLock.readLock().unlock();
+            }
+            changed.add(warehouseId);
+        }
+    }
+
+    private static final class Account {
+        private volatile double totalCapacity;
+        private final Map<String, DoubleAdder> allocatedByStatus = new ConcurrentHashMap<>();
+        private final DoubleAdder pending = new DoubleAdder();
+
+        private DoubleAdder allocated(String status) {
+            return allocatedByStatus.computeIfAbsent(status, s -> new DoubleAdder());
+        }
+
+        private double allocatedVolume() {
+            double sum = 0;
+            for (DoubleAdder adder : allocatedByStatus.values()) {
+                sum += adder.sum();
+            }
+            return sum;
+        }
+
+        private double usedVolume() {
+            return allocatedVolume() + pending.sum();
+        }
+    }
+
+    private static final class State {
+        private final Map<Long, Double> capacities = new HashMap<>();
+        private final Map<Long, Map<String, Double>> allocated = new HashMap<>();
+        private final Map<Long, Double> pending = new HashMap<>();
+    }
+}
@@ -0,0 +1,265 @@
+package org.example.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events feed of committed changes. Every event gets a monotonically increasing
+ * ID and is kept in a bounded replay ring, so a reconnecting client passes its Last-Event-ID
+ * and receives only what it missed. When the ID is no longer in the ring (or comes from a
+ * previous run) the client is told to reload its snapshot instead.
+ * <p>
+ * Each subscriber has its own bounded queue, drained by at most one sender task at a time,
+ * so events reach a client in ID order and a slow or stalled client holds up nobody else.
+ * A subscriber whose queue overflows is disconnected; it reconnects with its Last-Event-ID
+ * and catches up from the replay ring, or resyncs if it fell further behind than that.
+ */
+@Slf4j
+@Service
+public class ChangeFeed {
+
+    public enum Type {
+        SHIPMENT_CREATED("shipment.created"),
+        SHIPMENT_ITEMS_ADDED("shipment.items_added"),
+        SHIPMENT_STATUS_CHANGED("shipment.status_changed"),
+        SHIPMENTS_DELETED("shipment.deleted"),
+        SUPPLY_CREATED("supply.created"),
+        SUPPLY_PROCESSED("supply.processed"),
+        WAREHOUSE_CREATED("warehouse.created"),
+        PRODUCT_CREATED("product.created"),
+        CAPACITY_CHANGED("capacity.changed");
+
+        private final String eventName;
+
+        Type(String eventName) {
+            this.eventName = eventName;
+        }
+
+        public String eventName() {
+            return eventName;
+        }
+    }
+
+    private static final String RESYNC = "resync";
+
+    private record Event(long id, Type type, Object data) {}
+
+    // Queued like an event so that it never interleaves with a send in progress
+    private static final Event KEEPALIVE = new Event(0, null, null);
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(subscriberQueueSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Set before the first drain, then only touched by the draining task
+        private List<Event> missed = List.of();
+        private long resyncId = -1;
+        private boolean started;
+        private volatile boolean overflowed;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            if (!queue.offer(event)) {
+                // Gets no further events; its sender closes it once a stalled write returns
+                overflowed = true;
+                subscribers.remove(this);
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (!closed && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                if (!started) {
+                    started = true;
+                    sendInitial();
+                }
+                Event event;
+                while (!closed && !overflowed && (event = queue.poll()) != null) {
+                    if (event == KEEPALIVE) {
+                        emitter.send(SseEmitter.event().comment("keepalive"));
+                    } else {
+                        send(emitter, event);
+                    }
+                }
+                if (overflowed && !closed) {
+                    close(null);
+                    log.debug("Disconnected change feed subscriber that fell {} events behind", subscriberQueueSize);
+                }
+            } catch (IOException | IllegalStateException e) {
+                close(e);
+            } finally {
+                draining.set(false);
+            }
+            // An event offered after the last poll but before the flag was cleared
+            if (!closed && !queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void sendInitial() throws IOException {
+            if (resyncId >= 0) {
+                emitter.send(SseEmitter.event().id(Long.toString(resyncId)).name(RESYNC)
+                        .data(Map.of("reason", "replay window exceeded"), MediaType.APPLICATION_JSON));
+                return;
+            }
+            for (Event event : missed) {
+                send(emitter, event);
+            }
+            missed = List.of();
+            // Tells the client the stream is live even when nothing was missed
+            emitter.send(SseEmitter.event().comment("ready"));
+        }
+
+        void close(Exception cause) {
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            if (cause != null) {
+                log.debug("Dropping change feed subscriber: {}", cause.getMessage());
+                emitter.completeWithError(cause);
+            } else {
+                emitter.complete();
+            }
+        }
+    }
+
+    private final int replaySize;
+    private final int subscriberQueueSize;
+    private final long emitterTimeoutMs;
+
+    private final ArrayDeque<Event> replay;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService sender;
+
+    // IDs start at boot time so that IDs handed out by a previous run are always older than the ring
+    private long nextId = System.currentTimeMillis();
+
+    public ChangeFeed(@Value("${inventory.change-feed.replay-size:1024}") int replaySize,
+                      @Value("${inventory.change-feed.subscriber-queue-size:256}") int subscriberQueueSize,
+                      @Value("${inventory.change-feed.emitter-timeout-ms:1800000}") long emitterTimeoutMs) {
+        this.replaySize = replaySize;
+        this.subscriberQueueSize = subscriberQueueSize;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.replay = new ArrayDeque<>(replaySize);
+        // Threads only while subscribers have events pending, at most one per subscriber
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.sender = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "change-feed-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queues an event for all subscribers once the surrounding transaction commits.
+     */
+    public void publish(Type type, Object data) {
+        TransactionCallbacks.afterCommit(() -> append(type, data));
+    }
+
+    /**
+     * @param lastEventId the Last-Event-ID sent by a reconnecting client, or null for a fresh client
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        // Registered under the lock, so events appended later are queued after the missed ones
+        synchronized (this) {
+            long oldestAvailable = replay.isEmpty() ? nextId : replay.peekFirst().id();
+            boolean resync = lastEventId != null && (lastEventId < oldestAvailable - 1 || lastEventId >= nextId);
+            if (resync) {
+                subscriber.resyncId = nextId - 1;
+            } else if (lastEventId != null) {
+                List<Event> missed = new ArrayList<>();
+                for (Event event : replay) {
+                    if (event.id() > lastEventId) {
+                        missed.add(event);
+                    }
+                }
+                subscriber.missed = missed;
+            }
+            subscribers.add(subscriber);
+        }
+        subscriber.schedule();
+
+        return emitter;
+    }
+
+    /**
+     * ID of the last appended event. State read after this call includes every event up to
+     * it, so a client that loads such state subscribes with it as Last-Event-ID and gets the
+     * rest replayed.
+     */
+    public synchronized long position() {
+        return nextId - 1;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.change-feed.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(KEEPALIVE);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdown();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private synchronized void append(Type type, Object data) {
+        Event event = new Event(nextId++, type, data);
+        if (replay.size() == replaySize) {
+            replay.pollFirst();
+        }
+        replay.addLast(event);
+
+        // Offered under the lock, so every queue receives events in ID order
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    private static void send(SseEmitter emitter, Event event) throws IOException {
+        emitter.send(SseEmitter.event()
+                .id(Long.toString(event.id()))
+                .name(event.type().eventName())
+                .data(event.data(), MediaType.APPLICATION_JSON));
+    }
+}
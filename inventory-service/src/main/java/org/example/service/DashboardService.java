@@ -0,0 +1,152 @@
+package org.example.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.DashboardSnapshot;
+import org.example.dto.PageResponse;
+import org.example.dto.ProductResponse;
+import org.example.dto.ShipmentResponse;
+import org.example.dto.SupplyResponse;
+import org.example.dto.WarehouseResponse;
+import org.example.dto.WarehouseStatDto;
+import org.example.dto.WarehouseUtilization;
+import org.example.repository.ProductRepository;
+import org.example.repository.ShipmentJdbcRepository;
+import org.example.repository.SupplyRepository;
+import org.example.repository.WarehouseRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads every dashboard section in one read-only REPEATABLE READ transaction, so all
+ * sections reflect the same database state. Utilization comes from the
+ * {@link CapacityLedger} when no ledger write committed while the transaction took its
+ * snapshot, which is then the same state; otherwise the aggregate is run inside the
+ * transaction. Each section is versioned by a hash of its content, which lets clients
+ * skip sections they already have.
+ */
+@Slf4j
+@Service
+public class DashboardService {
+
+    private static final int RECENT_LIMIT = 100;
+
+    private final ShipmentJdbcRepository shipmentJdbcRepository;
+    private final SupplyRepository supplyRepository;
+    private final WarehouseRepository warehouseRepository;
+    private final ProductRepository productRepository;
+    private final CapacityLedger capacityLedger;
+    private final ChangeFeed changeFeed;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate snapshotTransaction;
+
+    public DashboardService(ShipmentJdbcRepository shipmentJdbcRepository,
+                            SupplyRepository supplyRepository,
+                            WarehouseRepository warehouseRepository,
+                            ProductRepository productRepository,
+                            CapacityLedger capacityLedger,
+                            ChangeFeed changeFeed,
+                            ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager) {
+        this.shipmentJdbcRepository = shipmentJdbcRepository;
+        this.supplyRepository = supplyRepository;
+        this.warehouseRepository = warehouseRepository;
+        this.productRepository = productRepository;
+        this.capacityLedger = capacityLedger;
+        this.changeFeed = changeFeed;
+        this.objectMapper = objectMapper;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * @param knownVersions section versions the client already holds; those sections are sent without data
+     */
+    public DashboardSnapshot snapshot(Set<String> knownVersions) {
+        SectionsRead read = snapshotTransaction.execute(tx -> {
+            // Events are appended after their commit, so everything up to this position is
+            // visible to the transaction's snapshot, which the first query takes
+            long feedPosition = changeFeed.position();
+            return new SectionsRead(feedPosition, readSections(capacityLedger.writeMark()));
+        });
+        Map<String, Object> sections = read.sections();
+
+        Map<String, DashboardSnapshot.Section> versioned = new LinkedHashMap<>();
+        StringBuilder combined = new StringBuilder();
+        sections.forEach((name, data) -> {
+            String version = version(data);
+            combined.append(name).append(':').append(version).append(';');
+            versioned.put(name, new DashboardSnapshot.Section(version,
+                    knownVersions.contains(version) ? null : data));
+        });
+
+        // The position is part of the version, so a 304 never hands back an older position
+        combined.append("feed:").append(read.feedPosition());
+        return new DashboardSnapshot(DigestUtils.md5DigestAsHex(combined.toString().getBytes()), read.feedPosition(), versioned);
+    }
+
+    private record SectionsRead(long feedPosition, Map<String, Object> sections) {}
+
+    private Map<String, Object> readSections(long ledgerMark) {
+        Map<String, Object> sections = new LinkedHashMap<>();
+
+        List<ShipmentResponse> shipments = shipmentJdbcRepository.findPage(null, null, null, RECENT_LIMIT);
+        sections.put("shipments", PageResponse.of(shipments, RECENT_LIMIT, ShipmentResponse::id));
+        // Right after the query that took the snapshot, so the ledger check spans one query
+        List<WarehouseStatDto> utilization = readUtilization(ledgerMark);
+
+        List<SupplyResponse> supplies = supplyRepository.findPage(null, null, null, PageRequest.ofSize(RECENT_LIMIT));
+        sections.put("supplies", PageResponse.of(supplies, RECENT_LIMIT, SupplyResponse::id));
+
+        int maxLimit = PageResponse.MAX_LIMIT;
+        List<WarehouseResponse> warehouses = warehouseRepository.findPage(null, PageRequest.ofSize(maxLimit));
+        sections.put("warehouses", PageResponse.of(warehouses, maxLimit, WarehouseResponse::id));
+
+        List<ProductResponse> products = productRepository.findPage(null, PageRequest.ofSize(maxLimit));
+        sections.put("products", PageResponse.of(products, maxLimit, ProductResponse::id));
+
+        sections.put("utilization", utilization);
+        return sections;
+    }
+
+    /**
+     * The ledger's figures if no ledger write committed since the mark, taken before the
+     * transaction's first query; they then cover exactly the commits the snapshot sees.
+     * Otherwise the same figures are aggregated from the snapshot.
+     */
+    private List<WarehouseStatDto> readUtilization(long ledgerMark) {
+        if (ledgerMark >= 0) {
+            List<WarehouseStatDto> stats = capacityLedger.getWarehouseStats();
+            if (capacityLedger.unchangedSince(ledgerMark)) {
+                return stats;
+            }
+        }
+        log.debug("Capacity ledger changed during the snapshot, aggregating utilization");
+        return warehouseRepository.findUtilization().stream()
+                .map(DashboardService::toStat)
+                .toList();
+    }
+
+    private static WarehouseStatDto toStat(WarehouseUtilization row) {
+        return WarehouseStatDto.of(row.getWarehouseId(), row.getTotalCapacity(), row.getUsedVolume());
+    }
+
+    private String version(Object section) {
+        try {
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(section)).substring(0, 16);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to version dashboard section", e);
+        }
+    }
+}
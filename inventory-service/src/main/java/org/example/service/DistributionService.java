@@ -1,95 +1,359 @@
 package org.example.service;
 
+import com.google.protobuf.InvalidProtocolBufferException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.dto.ItemResponse;
+import org.example.dto.ProductVolume;
+import org.example.dto.ShipmentResponse;
 import org.example.entity.*;
 import org.example.grpc.DistributionPlan;
 import org.example.grpc.Move;
+import org.example.grpc.UnallocatedItem;
 import org.example.repository.*;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DistributionService {
 
-    private final ShipmentRepository shipmentRepository;
+    private static final String PLANNED = ShipmentStatus.PLANNED.name();
+    private static final String SYSTEM_USER = "system_algo";
+
+    private final ShipmentJdbcRepository shipmentJdbcRepository;
     private final WarehouseRepository warehouseRepository;
     private final ProductRepository productRepository;
-    private final ShipmentItemRepository shipmentItemRepository;
     private final SupplyRepository supplyRepository;
+    private final SupplyItemRepository supplyItemRepository;
+    private final PlanApplicationRepository planApplicationRepository;
+    private final CapacityLedger capacityLedger;
+    private final AppliedPlanCache appliedPlanCache;
+    private final ChangeFeed changeFeed;
+    private final PipelineTimeline pipelineTimeline;
+    private final CalculationStatusService calculationStatusService;
+    private final SupplyStatusView supplyStatusView;
 
+    /**
+     * Applies a plan exactly once per request ID. Redeliveries of a plan that is
+     * already committed return without touching the shipment tables.
+     */
     @Transactional
     public void applyDistributionPlan(DistributionPlan plan, Long supplyId) {
-        log.info("Processing plan for Request ID: {}", plan.getRequestId());
+        String requestId = plan.getRequestId();
+        log.info("Processing plan for Request ID: {}", requestId);
 
-        long rawSourceId = plan.getSourceId();
-        final long sourceWarehouseId = (rawSourceId == 0) ? 1L : rawSourceId;
+        long sourceWarehouseId = resolveSourceWarehouseId(plan.getSourceId());
+        if (!claimPlan(requestId, supplyId, sourceWarehouseId)) {
+            return;
+        }
 
-        if (rawSourceId == 0) {
-            log.warn("Warning: Source ID from gRPC is 0! Using fallback Warehouse ID = 1.");
+        writePlan(plan, sourceWarehouseId, supplyId);
+
+        PlanApplication application = planApplicationRepository.findForUpdate(requestId)
+                .orElseThrow(() -> new RuntimeException("Plan record vanished: " + requestId));
+        markApplied(application, plan);
+    }
+
+    /**
+     * Inserts the IN_PROGRESS record for a plan. Joins the caller's transaction.
+     *
+     * @return false if the plan was already applied and should be acknowledged as a duplicate
+     */
+    @Transactional
+    public boolean claimPlan(String requestId, Long supplyId, long sourceWarehouseId) {
+        if (!warehouseRepository.existsById(sourceWarehouseId)) {
+            throw new RuntimeException("Source warehouse not found: " + sourceWarehouseId);
         }
 
-        Warehouse sourceWarehouse = warehouseRepository.findById(sourceWarehouseId)
-                .orElseThrow(() -> new RuntimeException("Source warehouse not found: " + sourceWarehouseId));
+        if (planApplicationRepository.claim(requestId, supplyId, sourceWarehouseId) == 0) {
+            PlanApplication existing = planApplicationRepository.findForUpdate(requestId)
+                    .orElseThrow(() -> new RuntimeException("Plan record vanished: " + requestId));
+            if (existing.getStatus() == PlanApplicationStatus.APPLIED) {
+                log.info("Plan {} was already applied, ignoring duplicate delivery", requestId);
+                appliedPlanCache.markApplied(requestId);
+                return false;
+            }
+            throw new IllegalStateException("Plan " + requestId + " is already " + existing.getStatus()
+                    + " through another delivery path");
+        }
+        return true;
+    }
 
-        for (Move move : plan.getMovesList()) {
-            Long destId = Long.parseLong(move.getWarehouseId());
-            Long prodId = Long.parseLong(move.getProductId());
+    /**
+     * Final step of a plan whose moves were committed separately: flips the supply and
+     * marks the plan APPLIED in one transaction.
+     */
+    @Transactional
+    public void completePlan(DistributionPlan plan, Long supplyId) {
+        reportUnallocated(plan.getUnallocatedItemsList());
+        markSupplyProcessed(supplyId);
 
-            Warehouse destWarehouse = warehouseRepository.findById(destId)
-                    .orElseThrow(() -> new RuntimeException("Destination warehouse not found: " + destId));
+        PlanApplication application = planApplicationRepository.findForUpdate(plan.getRequestId())
+                .orElseThrow(() -> new RuntimeException("Plan record vanished: " + plan.getRequestId()));
+        if (application.getStatus() != PlanApplicationStatus.IN_PROGRESS) {
+            // Released as stale while the moves were being written
+            throw new IllegalStateException("Plan " + plan.getRequestId() + " is " + application.getStatus());
+        }
+        markApplied(application, plan);
+    }
 
-            Product product = productRepository.findById(prodId)
-                    .orElseThrow(() -> new RuntimeException("Product not found: " + prodId));
+    /**
+     * Deletes shipments written for a plan that could not be completed and forgets the
+     * claim, so the engine can deliver the plan again.
+     */
+    @Transactional
+    public void compensatePlan(String requestId, long[] shipmentIds) {
+        deletePlanShipments(requestId, shipmentIds);
+        planApplicationRepository.deleteById(requestId);
+    }
 
-            Shipment shipment = new Shipment();
-            shipment.setSource(sourceWarehouse);
-            shipment.setDestination(destWarehouse);
-            shipment.setStatus("PLANNED");
-            shipment.setCreatedBy("system_algo");
-            shipment.setCreatedAt(LocalDateTime.now());
-            shipment.setLastModifiedBy("system_algo");
+    /**
+     * Fails a sharded claim that was not completed by the cutoff, because the instance
+     * applying it stopped or its compensation failed. The shipments it wrote are deleted and
+     * the plan is recorded as FAILED with no chunks applied, so the engine's retry claims it again.
+     *
+     * @return false if the plan finished or was touched since it was found stale
+     */
+    @Transactional
+    public boolean releaseStaleClaim(String requestId, LocalDateTime cutoff) {
+        PlanApplication application = planApplicationRepository.findForUpdate(requestId).orElse(null);
+        if (application == null || application.getStatus() != PlanApplicationStatus.IN_PROGRESS
+                || application.isStreamed() || !application.getLastModifiedAt().isBefore(cutoff)) {
+            return false;
+        }
 
-            shipment = shipmentRepository.save(shipment);
+        log.warn("Releasing stale claim of plan {}, last touched at {}", requestId, application.getLastModifiedAt());
+        deletePlanShipments(requestId, shipmentJdbcRepository.findRequestShipmentIds(requestId));
+        application.setStatus(PlanApplicationStatus.FAILED);
+        application.setChunksApplied(0);
+        application.setLastModifiedAt(LocalDateTime.now());
+        calculationStatusService.finished(requestId);
+        return true;
+    }
 
-            ShipmentItem item = new ShipmentItem();
-            item.setShipment(shipment);
-            item.setProduct(product);
-            item.setQuantity(move.getQuantity());
+    private void deletePlanShipments(String requestId, long[] shipmentIds) {
+        if (shipmentIds.length > 0) {
+            Map<Long, Double> volumes = shipmentJdbcRepository.deleteShipments(shipmentIds);
+            volumes.forEach((destId, volume) -> capacityLedger.recordAllocation(destId, PLANNED, -volume));
+            changeFeed.publish(ChangeFeed.Type.SHIPMENTS_DELETED, Map.of("ids", shipmentIds));
+            log.warn("Rolled back {} shipments of plan {}", shipmentIds.length, requestId);
+        }
+    }
+
+    /**
+     * Records a plan that could not be applied as FAILED and wakes the callers waiting on it.
+     * Runs after the apply transaction rolled back, so nothing else of the plan is kept.
+     */
+    @Transactional
+    public void failPlan(DistributionPlan plan, Long supplyId) {
+        String requestId = plan.getRequestId();
+        if (planApplicationRepository.recordFailure(requestId, supplyId,
+                resolveSourceWarehouseId(plan.getSourceId())) > 0) {
+            calculationStatusService.finished(requestId);
+        }
+    }
 
-            shipmentItemRepository.save(item);
+    /**
+     * Applies a plan recorded by {@link AsyncPlanApplier} and marks it APPLIED in the same transaction.
+     */
+    @Transactional
+    public void applyQueuedPlan(String requestId) {
+        PlanApplication application = planApplicationRepository.findForUpdate(requestId)
+                .orElseThrow(() -> new RuntimeException("Queued plan not found: " + requestId));
+
+        if (application.getStatus() != PlanApplicationStatus.QUEUED) {
+            log.info("Plan {} is already {}, skipping", requestId, application.getStatus());
+            return;
+        }
 
-            log.info("Saved Shipment #{} (WH-{} -> WH-{})", shipment.getId(), sourceWarehouseId, destId);
+        DistributionPlan plan;
+        try {
+            plan = DistributionPlan.parseFrom(application.getPayload());
+        } catch (InvalidProtocolBufferException e) {
+            throw new RuntimeException("Stored payload of plan " + requestId + " is unreadable", e);
         }
 
+        writePlan(plan, application.getSourceId(), application.getSupplyId());
+        markApplied(application, plan);
+    }
+
+    private void writePlan(DistributionPlan plan, long sourceWarehouseId, Long supplyId) {
+        applyMoves(plan.getRequestId(), sourceWarehouseId, plan.getMovesList());
+
         if (plan.getUnallocatedItemsCount() > 0) {
-            log.warn("⚠️ ALARM: Some items could not be allocated!");
-
-            for (org.example.grpc.UnallocatedItem unallocated : plan.getUnallocatedItemsList()) {
-                log.error("❌ Product ID {} (Volume: {}) failed. Reason: {}",
-                        unallocated.getProductId(),
-                        unallocated.getVolumeM3(),
-                        unallocated.getReason()
-                );
-            }
+            reportUnallocated(plan.getUnallocatedItemsList());
         } else {
             log.info("✅ Perfect! All items were allocated successfully.");
         }
 
+        markSupplyProcessed(supplyId);
+    }
+
+    private void markApplied(PlanApplication application, DistributionPlan plan) {
+        application.setStatus(PlanApplicationStatus.APPLIED);
+        application.setChunksApplied(1);
+        application.setMovesApplied(plan.getMovesCount());
+        application.setUnallocatedItems(plan.getUnallocatedItemsCount());
+        application.setPayload(null);
+        application.setLastModifiedAt(LocalDateTime.now());
+
+        appliedPlanCache.markApplied(application.getRequestId());
+        pipelineTimeline.applied(application.getRequestId());
+        calculationStatusService.finished(application.getRequestId());
+    }
+
+    /**
+     * One-off maintenance: merges the single-item shipments older versions wrote for each
+     * move into one shipment per plan and route.
+     */
+    @Transactional
+    public ShipmentJdbcRepository.Compaction compactPlanShipments() {
+        ShipmentJdbcRepository.Compaction compaction = shipmentJdbcRepository.compactPlanShipments(SYSTEM_USER);
+        if (compaction.removedIds().length > 0) {
+            changeFeed.publish(ChangeFeed.Type.SHIPMENTS_DELETED, Map.of("ids", compaction.removedIds()));
+            compaction.extended().forEach(shipment -> changeFeed.publish(ChangeFeed.Type.SHIPMENT_ITEMS_ADDED, shipment));
+        }
+        log.info("Shipment compaction removed {} single-item shipments", compaction.removedIds().length);
+        return compaction;
+    }
+
+    public long resolveSourceWarehouseId(long rawSourceId) {
+        if (rawSourceId == 0) {
+            log.warn("Warning: Source ID from gRPC is 0! Using fallback Warehouse ID = 1.");
+            return 1L;
+        }
+        return rawSourceId;
+    }
+
+    /**
+     * Writes the moves as one shipment per destination. Joins the caller's transaction, so the streaming
+     * path can commit each batch separately while the unary path stays all-or-nothing.
+     *
+     * @return IDs of the shipments created (existing shipments of the same plan are extended)
+     */
+    @Transactional
+    public long[] applyMoves(String requestId, long sourceWarehouseId, List<Move> moves) {
+        PlanMoves parsed = PlanMoves.parse(sourceWarehouseId, moves);
+        List<ShipmentJdbcRepository.ShipmentRow> rows = parsed.rows();
+
+        Map<Long, Double> productVolumes = resolveReferences(requestId, parsed);
+
+        Map<Long, Double> allocatedVolume = new HashMap<>();
+        for (ShipmentJdbcRepository.ShipmentRow row : rows) {
+            allocatedVolume.merge(row.destinationId(), row.quantity() * productVolumes.get(row.productId()), Double::sum);
+        }
+
+        ShipmentJdbcRepository.InsertedShipments inserted = shipmentJdbcRepository.insertShipments(
+                requestId, sourceWarehouseId, PLANNED, SYSTEM_USER, rows);
+        long[] shipmentIds = inserted.createdIds();
+
+        log.info("Saved {} moves as {} new shipments from WH-{}", rows.size(), shipmentIds.length, sourceWarehouseId);
+
+        allocatedVolume.forEach((destId, volume) -> capacityLedger.recordAllocation(destId, PLANNED, volume));
+        publishShipments(sourceWarehouseId, rows, inserted);
+        return shipmentIds;
+    }
+
+    private void publishShipments(long sourceWarehouseId, List<ShipmentJdbcRepository.ShipmentRow> rows,
+                                  ShipmentJdbcRepository.InsertedShipments inserted) {
+        Map<Long, List<ItemResponse>> itemsByDestination = new LinkedHashMap<>();
+        for (ShipmentJdbcRepository.ShipmentRow row : rows) {
+            itemsByDestination.computeIfAbsent(row.destinationId(), id -> new ArrayList<>())
+                    .add(new ItemResponse("Product-" + row.productId(), row.quantity()));
+        }
+
+        Set<Long> created = new HashSet<>();
+        for (long id : inserted.createdIds()) {
+            created.add(id);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        itemsByDestination.forEach((destId, items) -> {
+            Long shipmentId = inserted.shipmentByDestination().get(destId);
+            ShipmentResponse shipment = new ShipmentResponse(shipmentId, sourceWarehouseId, destId, PLANNED, now, items);
+            changeFeed.publish(created.contains(shipmentId)
+                    ? ChangeFeed.Type.SHIPMENT_CREATED
+                    : ChangeFeed.Type.SHIPMENT_ITEMS_ADDED, shipment);
+        });
+    }
+
+    public void reportUnallocated(List<UnallocatedItem> unallocatedItems) {
+        if (unallocatedItems.isEmpty()) {
+            return;
+        }
+
+        log.warn("⚠️ ALARM: Some items could not be allocated!");
+
+        for (UnallocatedItem unallocated : unallocatedItems) {
+            log.error("❌ Product ID {} (Volume: {}) failed. Reason: {}",
+                    unallocated.getProductId(),
+                    unallocated.getVolumeM3(),
+                    unallocated.getReason()
+            );
+        }
+    }
+
+    @Transactional
+    public void markSupplyProcessed(Long supplyId) {
         if (supplyId != null) {
             Supply supply = supplyRepository.findById(supplyId)
                     .orElseThrow(() -> new RuntimeException("Supply not found with ID: " + supplyId));
 
+            if (supply.getStatus() == SupplyStatus.RECEIVED) {
+                capacityLedger.recordSupplyProcessed(supply.getWarehouseId(),
+                        supplyItemRepository.calculateVolumeBySupply(supplyId));
+            }
+
             supply.setStatus(SupplyStatus.PROCESSED);
             supplyRepository.save(supply);
+            supplyStatusView.recordProcessed(supplyId, supply.getWarehouseId());
+            changeFeed.publish(ChangeFeed.Type.SUPPLY_PROCESSED,
+                    Map.of("id", supplyId, "status", SupplyStatus.PROCESSED));
 
             log.info("✅ Supply #{} status updated to PROCESSED. Double counting fixed.", supplyId);
         } else {
             log.warn("⚠️ Supply ID was null, could not update status!");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Validates every warehouse and product referenced by the plan with one query per
+     * entity type and reports all unknown IDs at once. Returns product volumes by ID.
+     */
+    private Map<Long, Double> resolveReferences(String requestId, PlanMoves parsed) {
+        Set<Long> warehouseIds = parsed.warehouseIds();
+        Set<Long> productIds = parsed.productIds();
+
+        Set<Long> missingWarehouses = new TreeSet<>(warehouseIds);
+        missingWarehouses.removeAll(warehouseRepository.findExistingIds(warehouseIds));
+
+        Map<Long, Double> productVolumes = new HashMap<>();
+        if (!productIds.isEmpty()) {
+            for (ProductVolume product : productRepository.findVolumesByIdIn(productIds)) {
+                productVolumes.put(product.getId(), product.getVolumeM3());
+            }
+        }
+        Set<Long> missingProducts = new TreeSet<>(productIds);
+        missingProducts.removeAll(productVolumes.keySet());
+
+        if (!missingWarehouses.isEmpty() || !missingProducts.isEmpty() || !parsed.malformed().isEmpty()) {
+            throw new RuntimeException("Plan " + requestId + " references unknown entities:"
+                    + " warehouses=" + missingWarehouses
+                    + ", products=" + missingProducts
+                    + ", malformed IDs=" + parsed.malformed());
+        }
+        return productVolumes;
+    }
+}
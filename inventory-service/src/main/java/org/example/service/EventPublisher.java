@@ -1,36 +1,66 @@
 package org.example.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.config.CustomUserDetails;
-import org.example.config.RabbitMQConfig;
+import org.example.config.JwtPrincipal;
 import org.example.dto.DistributionEvent;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.example.repository.CalculationOutboxRepository;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records calculation requests in the outbox; {@link OutboxRelay} publishes them. The
+ * request is durable once the surrounding transaction commits, whether or not the broker
+ * is reachable at that moment.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EventPublisher {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final CalculationOutboxRepository outboxRepository;
+    private final OutboxRelay outboxRelay;
+    private final ObjectMapper objectMapper;
 
-    public void sendCalculationRequest(DistributionEvent.DistributionEventBuilder eventBuilder) {
+    /**
+     * Queues all requests in one transaction with one batched insert; the relay then
+     * publishes them together.
+     */
+    @Transactional
+    public void sendCalculationRequests(List<DistributionEvent.DistributionEventBuilder> eventBuilders) {
         var authentication = SecurityContextHolder.getContext().getAuthentication();
-        var principal = (CustomUserDetails) authentication.getPrincipal();
 
-        DistributionEvent event = eventBuilder
-                .initiatedByUserId(principal.getId())
-                .initiatedByUsername(principal.getUsername())
-                .build();
+        // Tokens issued before user IDs were added to the claims still resolve to CustomUserDetails
+        Long userId = switch (authentication.getPrincipal()) {
+            case JwtPrincipal jwt -> jwt.userId();
+            case CustomUserDetails user -> user.getId();
+            default -> null;
+        };
+
+        List<CalculationOutboxRepository.NewEntry> entries = new ArrayList<>(eventBuilders.size());
+        for (DistributionEvent.DistributionEventBuilder eventBuilder : eventBuilders) {
+            DistributionEvent event = eventBuilder
+                    .initiatedByUserId(userId)
+                    .initiatedByUsername(authentication.getName())
+                    .build();
 
-        log.info("Publishing event to RabbitMQ by user {}: {}", principal.getUsername(), event);
+            log.info("Queueing calculation request by user {}: {}", authentication.getName(), event);
 
-        rabbitTemplate.convertAndSend(
-                RabbitMQConfig.EXCHANGE_NAME,
-                RabbitMQConfig.ROUTING_KEY,
-                event
-        );
+            try {
+                entries.add(new CalculationOutboxRepository.NewEntry(event.getRequestId(),
+                        event.getSourceWarehouseId(), event.getSizeClass(), objectMapper.writeValueAsString(event)));
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Failed to serialize calculation request " + event.getRequestId(), e);
+            }
+        }
+        outboxRepository.insertAll(entries);
+        TransactionCallbacks.afterCommit(outboxRelay::wakeUp);
     }
-}
\ No newline at end of file
+}
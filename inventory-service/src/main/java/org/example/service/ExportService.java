@@ -0,0 +1,141 @@
+package org.example.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.example.repository.ExportJdbcRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Writes exports as NDJSON straight from the database cursor: one JSON object per line,
+ * generated while the rows are read, so memory use does not depend on the table size.
+ */
+@Slf4j
+@Service
+public class ExportService {
+
+    // Flush early so the client sees the first rows at once, then in batches
+    private static final int FLUSH_EVERY_ROWS = 500;
+
+    private final ExportJdbcRepository exportJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ExportService(ExportJdbcRepository exportJdbcRepository,
+                         ObjectMapper objectMapper,
+                         PlatformTransactionManager transactionManager) {
+        this.exportJdbcRepository = exportJdbcRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * One line per shipment with its items nested. Items of a shipment come in on
+     * consecutive rows, so a line is closed as soon as the shipment ID changes.
+     */
+    public void writeShipments(String status, Long destinationId, OutputStream out) throws IOException {
+        try (JsonGenerator json = newGenerator(out)) {
+            long[] current = {-1L};
+            int[] rows = {0};
+
+            readOnlyTransaction.executeWithoutResult(tx ->
+                    exportJdbcRepository.streamShipments(status, destinationId, rs -> {
+                        try {
+                            long id = rs.getLong("id");
+                            if (id != current[0]) {
+                                if (current[0] != -1L) {
+                                    endShipment(json);
+                                }
+                                startShipment(json, rs, id);
+                                current[0] = id;
+                            }
+                            long productId = rs.getLong("product_id");
+                            if (!rs.wasNull()) {
+                                json.writeStartObject();
+                                json.writeNumberField("productId", productId);
+                                json.writeNumberField("quantity", rs.getInt("quantity"));
+                                json.writeEndObject();
+                            }
+                            flushPeriodically(json, ++rows[0]);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+
+            if (current[0] != -1L) {
+                endShipment(json);
+            }
+            log.info("Exported shipments: {} rows", rows[0]);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void writeStockLevels(Long warehouseId, OutputStream out) throws IOException {
+        try (JsonGenerator json = newGenerator(out)) {
+            int[] rows = {0};
+
+            readOnlyTransaction.executeWithoutResult(tx ->
+                    exportJdbcRepository.streamStockLevels(warehouseId, rs -> {
+                        try {
+                            json.writeStartObject();
+                            json.writeNumberField("warehouseId", rs.getLong("warehouse_id"));
+                            json.writeNumberField("productId", rs.getLong("product_id"));
+                            json.writeNumberField("quantity", rs.getInt("quantity"));
+                            json.writeEndObject();
+                            json.writeRaw('\n');
+                            flushPeriodically(json, ++rows[0]);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+
+            log.info("Exported stock levels: {} rows", rows[0]);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private JsonGenerator newGenerator(OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        // Lines are terminated explicitly, including the last one
+        json.setRootValueSeparator(null);
+        // The servlet stream is owned by the container
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return json;
+    }
+
+    private static void startShipment(JsonGenerator json, ResultSet rs, long id) throws IOException, SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+
+        json.writeStartObject();
+        json.writeNumberField("id", id);
+        json.writeNumberField("sourceId", rs.getLong("source_id"));
+        json.writeNumberField("destinationId", rs.getLong("destination_id"));
+        json.writeStringField("status", rs.getString("status"));
+        json.writeStringField("createdAt", createdAt != null ? createdAt.toLocalDateTime().toString() : null);
+        json.writeArrayFieldStart("items");
+    }
+
+    private static void endShipment(JsonGenerator json) throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static void flushPeriodically(JsonGenerator json, int rows) throws IOException {
+        if (rows == 1 || rows % FLUSH_EVERY_ROWS == 0) {
+            json.flush();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pending calculation of each supply triggered on this instance, so that repeated
+ * triggers (double clicks, client retries) join it instead of making the engine compute
+ * the same supply again. An entry is released when its plan is applied or fails, or
+ * ignored once older than the TTL, which covers requests that never come back.
+ */
+@Service
+public class InFlightCalculations {
+
+    private record InFlight(String requestId, long startedAtNanos) {}
+
+    private final Map<Long, InFlight> bySupply = new ConcurrentHashMap<>();
+    private final Map<String, Long> supplyByRequest = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final Counter coalesced;
+
+    public InFlightCalculations(MeterRegistry meterRegistry,
+                                @Value("${inventory.calculation.in-flight-ttl-ms:600000}") long ttlMs) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        Gauge.builder("inventory.calculation.in-flight", bySupply, Map::size)
+                .description("Supplies with a calculation pending on this instance")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("inventory.calculation.coalesced")
+                .description("Calculation triggers answered with the supply's pending request")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers {@code requestId} as the supply's calculation unless one is already pending.
+     *
+     * @return the pending request ID, or null if {@code requestId} was registered
+     */
+    public String reserve(Long supplyId, String requestId) {
+        long now = System.nanoTime();
+        InFlight[] replaced = new InFlight[1];
+        InFlight current = bySupply.compute(supplyId, (id, existing) -> {
+            if (existing != null && now - existing.startedAtNanos() < ttlNanos) {
+                return existing;
+            }
+            replaced[0] = existing;
+            return new InFlight(requestId, now);
+        });
+
+        if (!current.requestId().equals(requestId)) {
+            coalesced.increment();
+            return current.requestId();
+        }
+        if (replaced[0] != null) {
+            supplyByRequest.remove(replaced[0].requestId());
+        }
+        supplyByRequest.put(requestId, supplyId);
+        return null;
+    }
+
+    /**
+     * Forgets the request, e.g. once it finished or could not be queued.
+     */
+    public void release(String requestId) {
+        Long supplyId = supplyByRequest.remove(requestId);
+        if (supplyId != null) {
+            bySupply.computeIfPresent(supplyId, (id, inFlight) -> inFlight.requestId().equals(requestId) ? null : inFlight);
+        }
+    }
+}
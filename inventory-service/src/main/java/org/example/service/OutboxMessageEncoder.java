@@ -0,0 +1,48 @@
+package org.example.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.config.CalculationRequestedMessageConverter;
+import org.example.dto.DistributionEvent;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns an outbox row into the AMQP message the relay publishes. Rows hold the event as
+ * JSON, which is sent as is; other content types are encoded by the given converter.
+ */
+public final class OutboxMessageEncoder {
+
+    private final ObjectMapper objectMapper;
+    private final MessageConverter converter;
+    private final String contentType;
+
+    public OutboxMessageEncoder(ObjectMapper objectMapper, MessageConverter converter, String contentType) {
+        if (!contentType.equals(MessageProperties.CONTENT_TYPE_JSON)
+                && !contentType.equals(CalculationRequestedMessageConverter.CONTENT_TYPE)) {
+            throw new RuntimeException("Unsupported inventory.outbox.content-type: " + contentType);
+        }
+        this.objectMapper = objectMapper;
+        this.converter = converter;
+        this.contentType = contentType;
+    }
+
+    public Message toMessage(String requestId, String payload) throws JsonProcessingException {
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId(requestId);
+        properties.setContentType(contentType);
+        if (!contentType.equals(MessageProperties.CONTENT_TYPE_JSON)) {
+            DistributionEvent event = objectMapper.readValue(payload, DistributionEvent.class);
+            return converter.toMessage(event, properties);
+        }
+
+        // Same properties the JSON message converter sets
+        properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        properties.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, DistributionEvent.class.getName());
+        return new Message(payload.getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,341 @@
+package org.example.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.CalculationPartitions;
+import org.example.config.RabbitMQConfig;
+import org.example.repository.CalculationOutboxRepository;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The only component that talks to RabbitMQ. Drains {@code calculation_outbox} in batches:
+ * the due rows are claimed in a short transaction that leases them for
+ * {@code inventory.outbox.lease-ms}, published with publisher confirms outside of any
+ * transaction, and deleted once confirmed. Rows that were nacked, returned or not
+ * confirmed in time are retried with exponential backoff; rows of a relay that died
+ * mid-batch are picked up again once their lease runs out. Runs on one thread, woken
+ * after each commit that adds a row and otherwise polling. Delivery is at least once: a
+ * row whose confirm arrived but whose delete did not commit is published again, and the
+ * engine and plan apply are idempotent by request ID.
+ * Requests go out as JSON or, with {@code inventory.outbox.content-type}, as protobuf, to
+ * the partition of their source warehouse and the lane of their size class (see
+ * {@link CalculationPartitions}).
+ * <p>
+ * Requests of one source warehouse are published in outbox order: later rows of a hub wait
+ * while an earlier one is leased or backs off, and a relay only claims a hub's rows under
+ * that hub's advisory lock, together with every earlier row of the hub. Relays on several
+ * instances work on different hubs in parallel. The one gap is a batch in which a hub's
+ * row is nacked or unconfirmed after a later row of the same hub was already sent; the
+ * retried row then arrives after that later one.
+ */
+@Slf4j
+@Service
+public class OutboxRelay {
+
+    private final CalculationOutboxRepository outboxRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final PipelineTimeline pipelineTimeline;
+    private final CalculationPartitions partitions;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxMessageEncoder encoder;
+
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long confirmTimeoutMs;
+    private final long leaseMs;
+    private final long retryBackoffMs;
+    private final long maxRetryBackoffMs;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore wakeUps = new Semaphore(0);
+    private volatile boolean running = true;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong oldestAgeMs = new AtomicLong();
+    private final Timer lagTimer;
+    private final Timer batchTimer;
+    private final Counter published;
+    private final Counter nacked;
+    private final Counter timedOut;
+    private final Counter sendFailures;
+    private final Counter encodeFailures;
+
+    public OutboxRelay(CalculationOutboxRepository outboxRepository,
+                       RabbitTemplate rabbitTemplate,
+                       PipelineTimeline pipelineTimeline,
+                       CalculationPartitions partitions,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       ObjectMapper objectMapper,
+                       @Value("${inventory.outbox.content-type:application/json}") String contentType,
+                       @Value("${inventory.outbox.batch-size:100}") int batchSize,
+                       @Value("${inventory.outbox.poll-interval-ms:1000}") long pollIntervalMs,
+                       @Value("${inventory.outbox.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+                       @Value("${inventory.outbox.lease-ms:30000}") long leaseMs,
+                       @Value("${inventory.outbox.retry-backoff-ms:1000}") long retryBackoffMs,
+                       @Value("${inventory.outbox.max-retry-backoff-ms:60000}") long maxRetryBackoffMs) {
+        this.outboxRepository = outboxRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.pipelineTimeline = pipelineTimeline;
+        this.partitions = partitions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.encoder = new OutboxMessageEncoder(objectMapper, rabbitTemplate.getMessageConverter(), contentType);
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        if (leaseMs <= confirmTimeoutMs) {
+            throw new RuntimeException("inventory.outbox.lease-ms must exceed the confirm timeout, got " + leaseMs);
+        }
+        this.leaseMs = leaseMs;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxRetryBackoffMs = maxRetryBackoffMs;
+
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "outbox-relay");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        Gauge.builder("inventory.outbox.pending", pending, AtomicLong::get)
+                .description("Calculation requests waiting in the outbox")
+                .register(meterRegistry);
+        Gauge.builder("inventory.outbox.oldest.age", oldestAgeMs, age -> age.get() / 1000.0)
+                .description("Age of the oldest calculation request waiting in the outbox")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("inventory.outbox.lag")
+                .description("Time from writing a calculation request to the outbox until the broker confirmed it")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("inventory.outbox.batch.duration")
+                .description("Time to publish one outbox batch and collect its confirms")
+                .register(meterRegistry);
+        this.published = Counter.builder("inventory.outbox.published")
+                .description("Calculation requests confirmed by the broker")
+                .register(meterRegistry);
+        this.nacked = failureCounter(meterRegistry, "nack");
+        this.timedOut = failureCounter(meterRegistry, "timeout");
+        this.sendFailures = failureCounter(meterRegistry, "send");
+        this.encodeFailures = failureCounter(meterRegistry, "encode");
+    }
+
+    private static Counter failureCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("inventory.outbox.failures")
+                .description("Outbox publish attempts that will be retried")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor.execute(this::run);
+    }
+
+    /**
+     * Drains the outbox now instead of at the next poll; called after a row is committed.
+     */
+    public void wakeUp() {
+        wakeUps.release();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                // A full batch means more rows may be due, so keep going without waiting
+                while (running && drainBatch() == batchSize) {
+                    wakeUps.drainPermits();
+                }
+                updateBacklog();
+                if (wakeUps.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS)) {
+                    wakeUps.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Outbox relay failed, retrying in {} ms", pollIntervalMs, e);
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of rows handled, published or rescheduled
+     */
+    private int drainBatch() {
+        List<CalculationOutboxRepository.Entry> batch = transactionTemplate.execute(tx -> claim());
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        batchTimer.record(() -> publish(batch));
+        return batch.size();
+    }
+
+    /**
+     * Leases the due rows this relay may publish. The row and hub locks end with the
+     * transaction; from then on the lease keeps other relays off the rows.
+     */
+    private List<CalculationOutboxRepository.Entry> claim() {
+        List<CalculationOutboxRepository.Entry> due = outboxRepository.lockDue(batchSize);
+        if (due.isEmpty()) {
+            return due;
+        }
+        Set<Long> hubs = new HashSet<>();
+        for (CalculationOutboxRepository.Entry entry : due) {
+            if (entry.sourceWarehouseId() != null) {
+                hubs.add(entry.sourceWarehouseId());
+            }
+        }
+        Set<Long> lockedHubs = outboxRepository.tryLockHubs(hubs);
+        List<Long> candidates = new ArrayList<>(due.size());
+        for (CalculationOutboxRepository.Entry entry : due) {
+            if (entry.sourceWarehouseId() == null || lockedHubs.contains(entry.sourceWarehouseId())) {
+                candidates.add(entry.id());
+            }
+        }
+        Set<Long> leased = outboxRepository.lease(candidates, leaseMs);
+        return due.stream().filter(entry -> leased.contains(entry.id())).toList();
+    }
+
+    private void publish(List<CalculationOutboxRepository.Entry> claimed) {
+        long claimedAt = System.nanoTime();
+        List<CalculationOutboxRepository.Entry> batch = new ArrayList<>(claimed.size());
+        List<Message> messages = new ArrayList<>(claimed.size());
+        Set<Long> heldBack = new HashSet<>();
+        List<Long> released = new ArrayList<>();
+        for (CalculationOutboxRepository.Entry entry : claimed) {
+            if (entry.sourceWarehouseId() != null && heldBack.contains(entry.sourceWarehouseId())) {
+                // Picked up again once the hub's failed row went out
+                released.add(entry.id());
+                continue;
+            }
+            try {
+                messages.add(encoder.toMessage(entry.requestId(), entry.payload()));
+                batch.add(entry);
+            } catch (JsonProcessingException | MessageConversionException e) {
+                // Only this row and its hub are affected; retrying keeps it visible in the backlog metrics
+                log.error("Could not encode calculation request {}", entry.requestId(), e);
+                encodeFailures.increment();
+                reschedule(entry, e.getMessage());
+                if (entry.sourceWarehouseId() != null) {
+                    heldBack.add(entry.sourceWarehouseId());
+                }
+            }
+        }
+        outboxRepository.release(released);
+
+        List<CorrelationData> correlations = new ArrayList<>(batch.size());
+        int sent = 0;
+        try {
+            for (CalculationOutboxRepository.Entry entry : batch) {
+                CorrelationData correlation = new CorrelationData(entry.requestId());
+                rabbitTemplate.send(RabbitMQConfig.EXCHANGE_NAME, partitions.routingKey(entry.sourceWarehouseId(), entry.sizeClass()),
+                        messages.get(sent), correlation);
+                correlations.add(correlation);
+                sent++;
+            }
+        } catch (AmqpException e) {
+            // The broker is unreachable; everything not yet sent waits for the backoff
+            log.warn("Could not publish calculation requests, {} left in the outbox: {}", batch.size() - sent, e.getMessage());
+            for (CalculationOutboxRepository.Entry entry : batch.subList(sent, batch.size())) {
+                sendFailures.increment();
+                reschedule(entry, e.getMessage());
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        List<Long> confirmed = new ArrayList<>(sent);
+        for (int i = 0; i < sent; i++) {
+            CalculationOutboxRepository.Entry entry = batch.get(i);
+            CorrelationData correlation = correlations.get(i);
+            String failure = awaitConfirm(correlation, deadline);
+            if (failure == null) {
+                confirmed.add(entry.id());
+                published.increment();
+                lagTimer.record(entry.ageMs() + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - claimedAt),
+                        TimeUnit.MILLISECONDS);
+                pipelineTimeline.record(entry.requestId(), PipelineTimeline.Stage.PUBLISH_CONFIRMED);
+            } else {
+                log.warn("Broker did not confirm calculation request {}: {}", entry.requestId(), failure);
+                reschedule(entry, failure);
+            }
+        }
+        outboxRepository.delete(confirmed);
+    }
+
+    /**
+     * @return null once acked and not returned, otherwise why the publish failed
+     */
+    private String awaitConfirm(CorrelationData correlation, long deadlineNanos) {
+        try {
+            CorrelationData.Confirm confirm = correlation.getFuture()
+                    .get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (!confirm.isAck()) {
+                nacked.increment();
+                return "nack: " + confirm.getReason();
+            }
+            if (correlation.getReturned() != null) {
+                nacked.increment();
+                return "returned: " + correlation.getReturned().getReplyText();
+            }
+            return null;
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            return "no confirm within " + confirmTimeoutMs + " ms";
+        } catch (ExecutionException e) {
+            sendFailures.increment();
+            return e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+
+    private void reschedule(CalculationOutboxRepository.Entry entry, String error) {
+        long backoff = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(entry.attempts(), 20));
+        outboxRepository.reschedule(entry.id(), backoff, error);
+    }
+
+    private void updateBacklog() {
+        CalculationOutboxRepository.Backlog backlog = outboxRepository.backlog();
+        pending.set(backlog.pending());
+        oldestAgeMs.set(backlog.oldestAgeMs());
+    }
+}
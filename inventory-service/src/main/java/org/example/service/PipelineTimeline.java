@@ -0,0 +1,200 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.dto.PipelineTimelineResponse;
+import org.example.dto.SizeClass;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When each stage of a calculation happened, by request ID: triggered here, confirmed by
+ * the broker, generated by the engine, received back over gRPC and applied. The most
+ * recent timelines are kept in memory (oldest dropped first). Each stage is also
+ * recorded as the time since the previous stage the timeline has, so a request triggered
+ * on another instance only contributes the stages seen here. Requests triggered here also
+ * record their lane turnaround by size class: from the broker confirm until the plan came
+ * back, which includes the engine's compute time and the return call.
+ * <p>
+ * Time spent waiting in a lane's queue is not measured. The engine sends no pickup time
+ * back: {@code generated_at} is stamped when the finished plan is sent, in whole seconds.
+ * A lane whose turnaround grows while {@code inventory.calculation.queue.depth} stays low
+ * is slow to compute, not backed up.
+ */
+@Service
+public class PipelineTimeline {
+
+    public enum Stage {
+        TRIGGERED,
+        PUBLISH_CONFIRMED,
+        // Engine clock, second precision
+        GENERATED,
+        RECEIVED,
+        APPLIED;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private static final class Timeline {
+        final long[] times = new long[STAGES.length];
+        SizeClass sizeClass;
+    }
+
+    private final Map<String, Timeline> timelines;
+    private final Timer[] stageTimers = new Timer[STAGES.length];
+    private final Timer totalTimer;
+    private final Map<SizeClass, Timer> laneTurnaroundTimers = new EnumMap<>(SizeClass.class);
+
+    public PipelineTimeline(MeterRegistry meterRegistry,
+                            @Value("${inventory.pipeline.timeline-capacity:10000}") int capacity) {
+        this.timelines = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Timeline> eldest) {
+                return size() > capacity;
+            }
+        });
+
+        for (Stage stage : STAGES) {
+            stageTimers[stage.ordinal()] = Timer.builder("inventory.pipeline.stage")
+                    .description("Time from the previous pipeline stage of a calculation to this one")
+                    .tag("stage", stage.label)
+                    .register(meterRegistry);
+        }
+        this.totalTimer = Timer.builder("inventory.pipeline.duration")
+                .description("Time from triggering a calculation to its plan being applied")
+                .register(meterRegistry);
+        for (SizeClass sizeClass : SizeClass.values()) {
+            laneTurnaroundTimers.put(sizeClass, Timer.builder("inventory.pipeline.lane.turnaround")
+                    .description("Time from the broker confirming a calculation request until its plan was received, "
+                            + "engine compute and return call included; queue wait alone is not measured")
+                    .tag("size_class", sizeClass.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Records the TRIGGERED stage of a request queued in the lane of {@code sizeClass}.
+     */
+    public void triggered(String requestId, SizeClass sizeClass) {
+        record(requestId, Stage.TRIGGERED);
+        if (requestId != null && sizeClass != null) {
+            synchronized (timelines) {
+                Timeline timeline = timelines.get(requestId);
+                if (timeline != null) {
+                    timeline.sizeClass = sizeClass;
+                }
+            }
+        }
+    }
+
+    public void record(String requestId, Stage stage) {
+        record(requestId, stage, System.currentTimeMillis());
+    }
+
+    /**
+     * Records the stage unless the timeline already has it, so redeliveries keep the first time.
+     */
+    public void record(String requestId, Stage stage, long atMillis) {
+        if (requestId == null || requestId.isEmpty() || atMillis <= 0) {
+            return;
+        }
+
+        long sincePrevious = -1;
+        long sinceTriggered = -1;
+        long laneTurnaround = -1;
+        SizeClass sizeClass;
+        synchronized (timelines) {
+            Timeline timeline = timelines.computeIfAbsent(requestId, id -> new Timeline());
+            long[] times = timeline.times;
+            sizeClass = timeline.sizeClass;
+            if (times[stage.ordinal()] != 0) {
+                return;
+            }
+            times[stage.ordinal()] = atMillis;
+
+            for (int i = stage.ordinal() - 1; i >= 0; i--) {
+                if (times[i] != 0) {
+                    sincePrevious = atMillis - times[i];
+                    break;
+                }
+            }
+            if (stage == Stage.APPLIED && times[Stage.TRIGGERED.ordinal()] != 0) {
+                sinceTriggered = atMillis - times[Stage.TRIGGERED.ordinal()];
+            }
+            if (stage == Stage.RECEIVED && times[Stage.PUBLISH_CONFIRMED.ordinal()] != 0) {
+                laneTurnaround = atMillis - times[Stage.PUBLISH_CONFIRMED.ordinal()];
+            }
+        }
+
+        // Negative gaps come from clock skew between this host and the engine
+        if (sincePrevious >= 0) {
+            stageTimers[stage.ordinal()].record(sincePrevious, TimeUnit.MILLISECONDS);
+        }
+        if (sinceTriggered >= 0) {
+            totalTimer.record(sinceTriggered, TimeUnit.MILLISECONDS);
+        }
+        if (laneTurnaround >= 0 && sizeClass != null) {
+            laneTurnaroundTimers.get(sizeClass).record(laneTurnaround, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Records that the engine generated the plan and that it has just been received.
+     *
+     * @param generatedAtSeconds the plan's {@code generated_at}, Unix seconds; 0 if the engine did not set it
+     */
+    public void received(String requestId, long generatedAtSeconds) {
+        if (generatedAtSeconds > 0) {
+            record(requestId, Stage.GENERATED, TimeUnit.SECONDS.toMillis(generatedAtSeconds));
+        }
+        record(requestId, Stage.RECEIVED);
+    }
+
+    /**
+     * Records the APPLIED stage once the surrounding transaction commits.
+     */
+    public void applied(String requestId) {
+        TransactionCallbacks.afterCommit(() -> record(requestId, Stage.APPLIED));
+    }
+
+    public boolean contains(String requestId) {
+        return timelines.containsKey(requestId);
+    }
+
+    public Optional<PipelineTimelineResponse> find(String requestId) {
+        long[] times;
+        synchronized (timelines) {
+            Timeline stored = timelines.get(requestId);
+            if (stored == null) {
+                return Optional.empty();
+            }
+            times = stored.times.clone();
+        }
+
+        List<PipelineTimelineResponse.StageTime> stages = new ArrayList<>();
+        long previous = 0;
+        for (Stage stage : STAGES) {
+            long at = times[stage.ordinal()];
+            if (at == 0) {
+                continue;
+            }
+            stages.add(new PipelineTimelineResponse.StageTime(stage.label, Instant.ofEpochMilli(at),
+                    previous != 0 ? at - previous : null));
+            previous = at;
+        }
+        return Optional.of(new PipelineTimelineResponse(requestId, stages));
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.service;
+
+import org.example.grpc.Move;
+import org.example.repository.ShipmentJdbcRepository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves of a plan converted from their protobuf form into shipment rows, together with
+ * every warehouse and product they reference. Moves with non-numeric IDs are collected
+ * as malformed instead of failing on the first one.
+ */
+public final class PlanMoves {
+
+    private final List<ShipmentJdbcRepository.ShipmentRow> rows;
+    private final Set<Long> warehouseIds = new HashSet<>();
+    private final Set<Long> productIds = new HashSet<>();
+    private final List<String> malformed = new ArrayList<>();
+
+    private PlanMoves(int size) {
+        this.rows = new ArrayList<>(size);
+    }
+
+    public static PlanMoves parse(long sourceWarehouseId, List<Move> moves) {
+        PlanMoves parsed = new PlanMoves(moves.size());
+        parsed.warehouseIds.add(sourceWarehouseId);
+
+        for (Move move : moves) {
+            Long destId = parsed.parseId(move.getWarehouseId());
+            Long prodId = parsed.parseId(move.getProductId());
+            if (destId == null || prodId == null) {
+                continue;
+            }
+
+            parsed.warehouseIds.add(destId);
+            parsed.productIds.add(prodId);
+            parsed.rows.add(new ShipmentJdbcRepository.ShipmentRow(destId, prodId, move.getQuantity()));
+        }
+        return parsed;
+    }
+
+    public List<ShipmentJdbcRepository.ShipmentRow> rows() {
+        return rows;
+    }
+
+    public Set<Long> warehouseIds() {
+        return warehouseIds;
+    }
+
+    public Set<Long> productIds() {
+        return productIds;
+    }
+
+    public List<String> malformed() {
+        return malformed;
+    }
+
+    private Long parseId(String raw) {
+        try {
+            return Long.parseLong(raw);
+        } catch (NumberFormatException e) {
+            malformed.add(raw);
+            return null;
+        }
+    }
+}
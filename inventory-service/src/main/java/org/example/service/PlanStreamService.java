@@ -0,0 +1,150 @@
+package org.example.service;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.entity.PlanApplication;
+import org.example.entity.PlanApplicationStatus;
+import org.example.grpc.PlanBatch;
+import org.example.grpc.PlanHeader;
+import org.example.repository.PlanApplicationRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Applies a streamed plan one batch per transaction. Progress is stored in
+ * {@code plan_applications} together with each batch, and the supply is only
+ * marked PROCESSED once the stream completes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PlanStreamService {
+
+    private final PlanApplicationRepository planApplicationRepository;
+    private final DistributionService distributionService;
+    private final AppliedPlanCache appliedPlanCache;
+    private final PipelineTimeline pipelineTimeline;
+    private final CalculationStatusService calculationStatusService;
+    private final InFlightCalculations inFlightCalculations;
+
+    /**
+     * Records the stream's plan, or resumes it when an earlier stream of the same plan was
+     * interrupted. A plan held by the unary or async path is not touched, and one that
+     * failed there is taken over.
+     *
+     * @throws StatusRuntimeException FAILED_PRECONDITION if another delivery path holds the plan
+     */
+    @Transactional
+    public void begin(PlanHeader header) {
+        PlanApplication application = planApplicationRepository.findForUpdate(header.getRequestId())
+                .orElseGet(PlanApplication::new);
+
+        if (application.getRequestId() != null) {
+            if (application.getStatus() == PlanApplicationStatus.APPLIED) {
+                log.info("Plan stream {} was already applied", header.getRequestId());
+                return;
+            }
+            if (!application.isStreamed() && application.getStatus() != PlanApplicationStatus.FAILED) {
+                throw Status.FAILED_PRECONDITION
+                        .withDescription("Plan " + header.getRequestId() + " is already "
+                                + application.getStatus() + " through another delivery path")
+                        .asRuntimeException();
+            }
+            log.info("Resuming plan stream {} after {} batches (status {})",
+                    header.getRequestId(), application.getChunksApplied(), application.getStatus());
+            if (application.getStatus() == PlanApplicationStatus.FAILED) {
+                application.setStatus(PlanApplicationStatus.IN_PROGRESS);
+                application.setStreamed(true);
+                application.setPayload(null);
+                application.setLastModifiedAt(LocalDateTime.now());
+            }
+            return;
+        }
+
+        application.setRequestId(header.getRequestId());
+        application.setSupplyId(header.getSupplyId() == 0 ? null : header.getSupplyId());
+        application.setSourceId(distributionService.resolveSourceWarehouseId(header.getSourceId()));
+        application.setStatus(PlanApplicationStatus.IN_PROGRESS);
+        application.setStreamed(true);
+        planApplicationRepository.save(application);
+
+        log.info("Started plan stream {} for supply {}", header.getRequestId(), application.getSupplyId());
+    }
+
+    @Transactional
+    public void applyBatch(String requestId, PlanBatch batch) {
+        PlanApplication application = load(requestId);
+
+        if (application.getStatus() == PlanApplicationStatus.APPLIED) {
+            return;
+        }
+
+        int expected = application.getChunksApplied() + 1;
+        if (batch.getSequence() < expected) {
+            log.info("Skipping batch {} of plan {}: already committed", batch.getSequence(), requestId);
+            return;
+        }
+        if (batch.getSequence() > expected) {
+            throw new IllegalStateException("Plan " + requestId + " expected batch " + expected
+                    + " but received " + batch.getSequence());
+        }
+
+        distributionService.applyMoves(requestId, application.getSourceId(), batch.getMovesList());
+        distributionService.reportUnallocated(batch.getUnallocatedItemsList());
+
+        application.setChunksApplied(expected);
+        application.setMovesApplied(application.getMovesApplied() + batch.getMovesCount());
+        application.setUnallocatedItems(application.getUnallocatedItems() + batch.getUnallocatedItemsCount());
+        application.setLastModifiedAt(LocalDateTime.now());
+    }
+
+    @Transactional
+    public void complete(String requestId) {
+        PlanApplication application = load(requestId);
+
+        if (application.getStatus() == PlanApplicationStatus.APPLIED) {
+            return;
+        }
+
+        distributionService.markSupplyProcessed(application.getSupplyId());
+
+        application.setStatus(PlanApplicationStatus.APPLIED);
+        application.setLastModifiedAt(LocalDateTime.now());
+        appliedPlanCache.markApplied(requestId);
+        pipelineTimeline.applied(requestId);
+        calculationStatusService.finished(requestId);
+
+        log.info("Plan stream {} applied: {} batches, {} moves, {} unallocated",
+                requestId, application.getChunksApplied(), application.getMovesApplied(),
+                application.getUnallocatedItems());
+    }
+
+    /**
+     * Marks the stream's plan FAILED, keeping its committed batches for a resume. A plan
+     * held by another delivery path is left to that path.
+     */
+    @Transactional
+    public void fail(String requestId) {
+        Optional<PlanApplication> application = planApplicationRepository.findForUpdate(requestId);
+        if (application.isEmpty()) {
+            // Rejected before its header was recorded
+            inFlightCalculations.release(requestId);
+            return;
+        }
+        if (application.get().isStreamed() && application.get().getStatus() != PlanApplicationStatus.APPLIED) {
+            application.get().setStatus(PlanApplicationStatus.FAILED);
+            application.get().setLastModifiedAt(LocalDateTime.now());
+            calculationStatusService.finished(requestId);
+        }
+    }
+
+    private PlanApplication load(String requestId) {
+        return planApplicationRepository.findForUpdate(requestId)
+                .orElseThrow(() -> new IllegalStateException("No plan header received for " + requestId));
+    }
+}
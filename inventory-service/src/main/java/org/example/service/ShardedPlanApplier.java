@@ -0,0 +1,184 @@
+package org.example.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.entity.PlanApplicationStatus;
+import org.example.grpc.DistributionPlan;
+import org.example.grpc.Move;
+import org.example.repository.PlanApplicationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optional parallel apply path. Moves are partitioned by destination warehouse and each
+ * partition is written in its own transaction on its own pooled connection. The supply
+ * is flipped to PROCESSED only after every partition committed; if any partition fails,
+ * the shipments of the partitions that did commit are deleted again.
+ * <p>
+ * The claim commits before the partitions run. A claim left IN_PROGRESS by a stopped
+ * instance or a failed compensation is released by a periodic sweep once it is older than
+ * {@code inventory.plan-apply.sharded.claim-timeout-ms}: its shipments are deleted and the
+ * plan is marked FAILED, so the engine's retry is claimed again.
+ */
+@Slf4j
+@Service
+public class ShardedPlanApplier {
+
+    private final DistributionService distributionService;
+    private final PlanApplicationRepository planApplicationRepository;
+
+    private final boolean enabled;
+    private final int partitions;
+    private final int minMoves;
+    private final long claimTimeoutMs;
+    private final ExecutorService executor;
+    // Plans this instance is applying; never released as stale, however long they take
+    private final Set<String> applying = ConcurrentHashMap.newKeySet();
+
+    public ShardedPlanApplier(DistributionService distributionService,
+                              PlanApplicationRepository planApplicationRepository,
+                              @Value("${inventory.plan-apply.sharded.enabled:false}") boolean enabled,
+                              @Value("${inventory.plan-apply.sharded.partitions:4}") int partitions,
+                              @Value("${inventory.plan-apply.sharded.min-moves:500}") int minMoves,
+                              @Value("${inventory.plan-apply.sharded.claim-timeout-ms:600000}") long claimTimeoutMs) {
+        this.distributionService = distributionService;
+        this.planApplicationRepository = planApplicationRepository;
+        this.enabled = enabled;
+        this.partitions = partitions;
+        this.minMoves = minMoves;
+        this.claimTimeoutMs = claimTimeoutMs;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(partitions, r -> {
+            Thread t = new Thread(r, "plan-shard-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Small plans gain nothing from fan-out, so they stay on the single-transaction path.
+     */
+    public boolean shouldApply(DistributionPlan plan) {
+        return enabled && plan.getMovesCount() >= minMoves;
+    }
+
+    public void apply(DistributionPlan plan, Long supplyId) {
+        String requestId = plan.getRequestId();
+        if (!applying.add(requestId)) {
+            throw new IllegalStateException("Plan " + requestId + " is already being applied");
+        }
+        try {
+            applyClaimed(plan, supplyId);
+        } finally {
+            applying.remove(requestId);
+        }
+    }
+
+    /**
+     * Releases sharded claims that stayed IN_PROGRESS past the claim timeout.
+     */
+    @Scheduled(fixedDelayString = "${inventory.plan-apply.sharded.sweep-interval-ms:60000}")
+    public void releaseStaleClaims() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(claimTimeoutMs));
+        for (String requestId : planApplicationRepository.findStaleClaims(PlanApplicationStatus.IN_PROGRESS, cutoff)) {
+            if (applying.contains(requestId)) {
+                continue;
+            }
+            try {
+                distributionService.releaseStaleClaim(requestId, cutoff);
+            } catch (RuntimeException e) {
+                log.error("Could not release stale claim of plan {}", requestId, e);
+            }
+        }
+    }
+
+    private void applyClaimed(DistributionPlan plan, Long supplyId) {
+        String requestId = plan.getRequestId();
+        long sourceWarehouseId = distributionService.resolveSourceWarehouseId(plan.getSourceId());
+
+        if (!distributionService.claimPlan(requestId, supplyId, sourceWarehouseId)) {
+            return;
+        }
+
+        List<List<Move>> shards = partition(plan.getMovesList());
+        log.info("Applying plan {} in {} destination shards", requestId, shards.size());
+
+        List<CompletableFuture<long[]>> futures = new ArrayList<>(shards.size());
+        for (List<Move> shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> distributionService.applyMoves(requestId, sourceWarehouseId, shard), executor));
+        }
+
+        List<long[]> committed = new ArrayList<>(shards.size());
+        Throwable failure = null;
+        for (CompletableFuture<long[]> future : futures) {
+            try {
+                committed.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            }
+        }
+
+        if (failure == null) {
+            try {
+                distributionService.completePlan(plan, supplyId);
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        long[] shipmentIds = committed.stream().flatMapToLong(Arrays::stream).toArray();
+        log.error("Sharded apply of plan {} failed, compensating {} shipments", requestId, shipmentIds.length);
+        distributionService.compensatePlan(requestId, shipmentIds);
+
+        throw new RuntimeException("Failed to apply plan " + requestId, failure);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private List<List<Move>> partition(List<Move> moves) {
+        List<List<Move>> buckets = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (Move move : moves) {
+            buckets.get(shardOf(move)).add(move);
+        }
+        buckets.removeIf(List::isEmpty);
+        return buckets;
+    }
+
+    /**
+     * By the numeric destination ID, so that "01" and "1" share a shard and its shipment.
+     * A malformed ID fails validation in whichever shard it lands.
+     */
+    private int shardOf(Move move) {
+        try {
+            return Math.floorMod(Long.parseLong(move.getWarehouseId()), partitions);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dto.SupplyState;
+import org.example.entity.SupplyStatus;
+import org.example.repository.SupplyRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory source warehouse, status and size of every supply, seeded once from the database
+ * and kept current by the write paths after commit, so triggering a calculation needs no
+ * supply read. A supply created by another instance is read from the database on first
+ * use. One processed by another instance can still show RECEIVED here, but PROCESSED is
+ * never stale, so rejecting processed supplies from this view is always correct.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SupplyStatusView {
+
+    public record Supply(long warehouseId, SupplyStatus status, long units, double volumeM3) {}
+
+    private final SupplyRepository supplyRepository;
+
+    private final Map<Long, Supply> supplies = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        for (SupplyState state : supplyRepository.findAllStates()) {
+            // A write that committed since the seed query started is newer
+            supplies.putIfAbsent(state.getId(), toSupply(state));
+        }
+        log.info("Supply status view seeded with {} supplies", supplies.size());
+    }
+
+    public void recordReceived(Long supplyId, Long warehouseId, long units, double volumeM3) {
+        TransactionCallbacks.afterCommit(() -> supplies.put(supplyId,
+                new Supply(warehouseId, SupplyStatus.RECEIVED, units, volumeM3)));
+    }
+
+    public void recordProcessed(Long supplyId, Long warehouseId) {
+        TransactionCallbacks.afterCommit(() -> supplies.compute(supplyId, (id, known) -> known != null
+                ? new Supply(warehouseId, SupplyStatus.PROCESSED, known.units(), known.volumeM3())
+                : new Supply(warehouseId, SupplyStatus.PROCESSED, 0, 0)));
+    }
+
+    /**
+     * @return the supplies by ID; those that do not exist are left out
+     */
+    public Map<Long, Supply> find(Collection<Long> supplyIds) {
+        Map<Long, Supply> found = new HashMap<>();
+        List<Long> unknown = new ArrayList<>();
+        for (Long id : supplyIds) {
+            Supply supply = supplies.get(id);
+            if (supply != null) {
+                found.put(id, supply);
+            } else {
+                unknown.add(id);
+            }
+        }
+
+        if (!unknown.isEmpty()) {
+            for (SupplyState state : supplyRepository.findStates(unknown)) {
+                Supply supply = toSupply(state);
+                supplies.putIfAbsent(state.getId(), supply);
+                found.put(state.getId(), supply);
+            }
+        }
+        return found;
+    }
+
+    private static Supply toSupply(SupplyState state) {
+        return new Supply(state.getWarehouseId(), state.getStatus(), state.getUnits(), state.getVolumeM3());
+    }
+}
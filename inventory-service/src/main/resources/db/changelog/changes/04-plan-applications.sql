@@ -0,0 +1,14 @@
+-- liquibase formatted sql
+
+-- changeset anton:6
+CREATE TABLE plan_applications (
+                                   request_id VARCHAR(64) PRIMARY KEY,
+                                   supply_id BIGINT REFERENCES supplies(id),
+                                   source_id BIGINT NOT NULL REFERENCES warehouses(id),
+                                   status VARCHAR(50) NOT NULL,
+                                   chunks_applied INTEGER NOT NULL DEFAULT 0,
+                                   moves_applied INTEGER NOT NULL DEFAULT 0,
+                                   unallocated_items INTEGER NOT NULL DEFAULT 0,
+                                   created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                   last_modified_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
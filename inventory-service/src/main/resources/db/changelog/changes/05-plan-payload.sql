@@ -0,0 +1,6 @@
+-- liquibase formatted sql
+
+-- changeset anton:7
+ALTER TABLE plan_applications ADD COLUMN payload BYTEA;
+
+CREATE INDEX idx_plan_applications_status ON plan_applications(status, created_at);
@@ -0,0 +1,6 @@
+-- liquibase formatted sql
+
+-- changeset anton:8
+ALTER TABLE shipments ADD COLUMN request_id VARCHAR(64);
+
+CREATE INDEX idx_shipments_request_dest ON shipments(request_id, destination_id);
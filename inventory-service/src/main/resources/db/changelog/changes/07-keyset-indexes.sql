@@ -0,0 +1,8 @@
+-- liquibase formatted sql
+
+-- changeset anton:9
+CREATE INDEX idx_shipments_status_id ON shipments(status, id);
+CREATE INDEX idx_shipments_dest_id ON shipments(destination_id, id);
+CREATE INDEX idx_supplies_status_id ON supplies(status, id);
+CREATE INDEX idx_supplies_warehouse_id ON supplies(warehouse_id, id);
+CREATE INDEX idx_stock_levels_product ON stock_levels(product_id, warehouse_id);
@@ -0,0 +1,4 @@
+-- liquibase formatted sql
+
+-- changeset anton:10
+ALTER TABLE users ADD COLUMN token_version INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,14 @@
+-- liquibase formatted sql
+
+-- changeset anton:11
+CREATE TABLE calculation_outbox (
+                                    id BIGSERIAL PRIMARY KEY,
+                                    request_id VARCHAR(64) NOT NULL UNIQUE,
+                                    payload TEXT NOT NULL,
+                                    attempts INTEGER NOT NULL DEFAULT 0,
+                                    last_error VARCHAR(500),
+                                    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_calculation_outbox_next_attempt ON calculation_outbox(next_attempt_at, id);
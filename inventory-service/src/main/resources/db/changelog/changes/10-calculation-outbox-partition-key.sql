@@ -0,0 +1,4 @@
+-- liquibase formatted sql
+
+-- changeset anton:12
+ALTER TABLE calculation_outbox ADD COLUMN source_warehouse_id BIGINT;
@@ -0,0 +1,4 @@
+-- liquibase formatted sql
+
+-- changeset anton:13
+ALTER TABLE calculation_outbox ADD COLUMN size_class VARCHAR(16);
@@ -0,0 +1,4 @@
+-- liquibase formatted sql
+
+-- changeset anton:14
+ALTER TABLE plan_applications ADD COLUMN streamed BOOLEAN NOT NULL DEFAULT FALSE;
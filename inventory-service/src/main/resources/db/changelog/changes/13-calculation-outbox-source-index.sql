@@ -0,0 +1,4 @@
+-- liquibase formatted sql
+
+-- changeset anton:15
+CREATE INDEX idx_calculation_outbox_source ON calculation_outbox(source_warehouse_id, id);
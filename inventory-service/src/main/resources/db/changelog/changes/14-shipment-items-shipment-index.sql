@@ -0,0 +1,4 @@
+-- liquibase formatted sql
+
+-- changeset anton:16
+CREATE INDEX idx_shipment_items_shipment_id ON shipment_items(shipment_id, id);
@@ -0,0 +1,62 @@
+package org.example.soak;
+
+import org.apache.qpid.server.SystemLauncher;
+import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.model.SystemConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory AMQP 0-9-1 broker (Qpid Broker-J) standing in for RabbitMQ, with the
+ * default guest account. Exchanges, queues and publisher confirms behave the same for
+ * what the service uses; nothing is written to disk beyond an empty work directory.
+ */
+final class EmbeddedBroker implements AutoCloseable {
+
+    private final SystemLauncher launcher = new SystemLauncher();
+    private final int port;
+
+    private EmbeddedBroker(int port) {
+        this.port = port;
+    }
+
+    static EmbeddedBroker start(int port) {
+        URL config = EmbeddedBroker.class.getResource("/soak-broker.json");
+        if (config == null) {
+            throw new IllegalStateException("soak-broker.json not on the classpath");
+        }
+
+        EmbeddedBroker broker = new EmbeddedBroker(port);
+        try {
+            Path workDir = Files.createTempDirectory("soak-broker");
+            Map<String, Object> attributes = new HashMap<>();
+            attributes.put(ConfiguredObject.TYPE, "Memory");
+            attributes.put(SystemConfig.INITIAL_CONFIGURATION_LOCATION, config.toExternalForm());
+            attributes.put(SystemConfig.STARTUP_LOGGED_TO_SYSTEM_OUT, false);
+            attributes.put(ConfiguredObject.CONTEXT, Map.of(
+                    "qpid.amqp_port", String.valueOf(port),
+                    SystemConfig.QPID_WORK_DIR, workDir.toString()));
+            broker.launcher.startup(attributes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start the embedded broker", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to start the embedded broker", e);
+        }
+        return broker;
+    }
+
+    int port() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        launcher.shutdown();
+    }
+}
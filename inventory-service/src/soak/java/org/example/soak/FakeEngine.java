@@ -0,0 +1,234 @@
+package org.example.soak;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.rpc.RetryInfo;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.StatusProto;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.CalculationPartitions;
+import org.example.config.CalculationRequestedMessageConverter;
+import org.example.config.RabbitMQConfig;
+import org.example.dto.SizeClass;
+import org.example.grpc.CalculationRequested;
+import org.example.grpc.DistributionPlan;
+import org.example.grpc.DistributionResultReceiverGrpc;
+import org.example.grpc.Move;
+import org.example.grpc.UnallocatedItem;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Stands in for the Go distribution engine: consumes calculation requests from the
+ * broker and answers each with a synthetic plan over the real gRPC ProcessPlan call,
+ * retrying RESOURCE_EXHAUSTED and UNAVAILABLE after the delay the service asks for.
+ * Plan size and compute time are fixed per run, except that LARGE requests take
+ * {@code --large-delay-factor} times as long; moves go to random warehouses.
+ * <p>
+ * With size class lanes the workers are split over the lanes by {@code --lane-weights}
+ * (at least one each), which is how the engine is meant to consume them: a backlog in one
+ * lane only ever occupies that lane's workers.
+ */
+@Slf4j
+final class FakeEngine implements AutoCloseable {
+
+    static final String OPERATION = "engine.process_plan";
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Duration DEFAULT_RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration DEADLINE = Duration.ofMinutes(2);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CachingConnectionFactory connectionFactory;
+    private final List<SimpleMessageListenerContainer> containers = new ArrayList<>();
+    private final ManagedChannel channel;
+    private final DistributionResultReceiverGrpc.DistributionResultReceiverBlockingStub receiver;
+    private final OperationStats stats;
+    private final List<Long> warehouseIds;
+    private final List<Long> productIds;
+    private final int moves;
+    private final int unallocated;
+    private final Duration delay;
+    private final int largeDelayFactor;
+
+    FakeEngine(SoakEnvironment environment, SoakOptions options, OperationStats stats) {
+        this.stats = stats;
+        this.warehouseIds = environment.warehouseIds();
+        this.productIds = environment.productIds();
+        this.moves = options.planMoves();
+        this.unallocated = options.planUnallocated();
+        this.delay = options.engineDelay();
+        this.largeDelayFactor = options.largeDelayFactor();
+
+        this.channel = ManagedChannelBuilder.forAddress("localhost", environment.grpcPort())
+                .usePlaintext()
+                .maxInboundMessageSize(64 * 1024 * 1024)
+                .build();
+        this.receiver = DistributionResultReceiverGrpc.newBlockingStub(channel);
+
+        this.connectionFactory = new CachingConnectionFactory("localhost", environment.amqpPort());
+        connectionFactory.setUsername("guest");
+        connectionFactory.setPassword("guest");
+
+        // Declared here as well, since the service only declares them on its first publish
+        CalculationPartitions partitions = environment.calculationPartitions();
+        RabbitAdmin admin = new RabbitAdmin(connectionFactory);
+        TopicExchange exchange = new TopicExchange(RabbitMQConfig.EXCHANGE_NAME);
+        admin.declareExchange(exchange);
+        for (int partition = 0; partition < partitions.count(); partition++) {
+            for (SizeClass lane : partitions.lanes()) {
+                Queue queue = new Queue(partitions.queueName(partition, lane), true);
+                admin.declareQueue(queue);
+                admin.declareBinding(BindingBuilder.bind(queue).to(exchange).with(partitions.routingKey(partition, lane)));
+            }
+        }
+
+        int totalWeight = partitions.lanes().stream().mapToInt(options.laneWeights()::get).sum();
+        for (SizeClass lane : partitions.lanes()) {
+            int workers = Math.max(1, Math.round((float) options.engineWorkers() * options.laneWeights().get(lane) / totalWeight));
+            SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+            container.setQueueNames(IntStream.range(0, partitions.count())
+                    .mapToObj(partition -> partitions.queueName(partition, lane))
+                    .toArray(String[]::new));
+            container.setConcurrentConsumers(workers);
+            container.setPrefetchCount(1);
+            container.setDefaultRequeueRejected(false);
+            container.setMessageListener((MessageListener) this::onRequest);
+            containers.add(container);
+        }
+    }
+
+    void start() {
+        containers.forEach(SimpleMessageListenerContainer::start);
+    }
+
+    private void onRequest(Message message) {
+        CalculationRequested event = decode(message);
+        String requestId = event.getRequestId();
+        DistributionPlan plan = plan(requestId, event.getSourceWarehouseId(), event.getSupplyId());
+
+        sleep(event.getSizeClass() == CalculationRequested.SizeClass.LARGE ? delay.multipliedBy(largeDelayFactor) : delay);
+
+        long start = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                receiver.withDeadlineAfter(DEADLINE.toMillis(), TimeUnit.MILLISECONDS).processPlan(plan);
+                stats.success(OPERATION, System.nanoTime() - start);
+                return;
+            } catch (StatusRuntimeException e) {
+                Status.Code code = e.getStatus().getCode();
+                boolean retryable = code == Status.Code.RESOURCE_EXHAUSTED || code == Status.Code.UNAVAILABLE;
+                if (!retryable || attempt == MAX_ATTEMPTS) {
+                    stats.failure(OPERATION, System.nanoTime() - start, code.name());
+                    log.warn("Plan {} failed after {} attempts: {}", requestId, attempt, e.getStatus());
+                    return;
+                }
+                stats.failure(OPERATION + ".retry", 0, code.name());
+                sleep(retryDelay(e));
+            }
+        }
+    }
+
+    /**
+     * Reads both encodings by content type, as the engine must while the service switches over.
+     */
+    private CalculationRequested decode(Message message) {
+        try {
+            if (CalculationRequestedMessageConverter.CONTENT_TYPE.equals(message.getMessageProperties().getContentType())) {
+                return CalculationRequested.parseFrom(message.getBody());
+            }
+            JsonNode event = objectMapper.readTree(message.getBody());
+            return CalculationRequested.newBuilder()
+                    .setRequestId(event.path("request_id").asText())
+                    .setSourceWarehouseId(event.path("source_warehouse_id").asLong())
+                    .setSupplyId(event.path("supply_id").asLong())
+                    .setSizeClass(event.hasNonNull("size_class")
+                            ? CalculationRequested.SizeClass.valueOf(event.path("size_class").asText())
+                            : CalculationRequested.SizeClass.SIZE_CLASS_UNSPECIFIED)
+                    .build();
+        } catch (IOException e) {
+            throw new AmqpRejectAndDontRequeueException("Unreadable calculation request", e);
+        }
+    }
+
+    private DistributionPlan plan(String requestId, long sourceId, long supplyId) {
+        SplittableRandom random = new SplittableRandom(requestId.hashCode());
+        DistributionPlan.Builder plan = DistributionPlan.newBuilder()
+                .setRequestId(requestId)
+                .setSourceId(sourceId)
+                .setSupplyId(supplyId)
+                .setGeneratedAt(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+
+        for (int i = 0; i < moves; i++) {
+            long warehouseId = warehouseIds.get(random.nextInt(warehouseIds.size()));
+            if (warehouseId == sourceId) {
+                warehouseId = warehouseIds.get((warehouseIds.indexOf(warehouseId) + 1) % warehouseIds.size());
+            }
+            plan.addMoves(Move.newBuilder()
+                    .setWarehouseId(String.valueOf(warehouseId))
+                    .setProductId(String.valueOf(productIds.get(random.nextInt(productIds.size()))))
+                    .setQuantity(1 + random.nextInt(50))
+                    .setVolumeM3(0.05));
+        }
+        for (int i = 0; i < unallocated; i++) {
+            plan.addUnallocatedItems(UnallocatedItem.newBuilder()
+                    .setProductId(String.valueOf(productIds.get(random.nextInt(productIds.size()))))
+                    .setVolumeM3(0.05)
+                    .setReason("No warehouse with enough free capacity"));
+        }
+        return plan.build();
+    }
+
+    private static Duration retryDelay(StatusRuntimeException e) {
+        com.google.rpc.Status status = StatusProto.fromThrowable(e);
+        if (status != null) {
+            for (var detail : status.getDetailsList()) {
+                if (detail.is(RetryInfo.class)) {
+                    try {
+                        var delay = detail.unpack(RetryInfo.class).getRetryDelay();
+                        return Duration.ofSeconds(delay.getSeconds(), delay.getNanos());
+                    } catch (IOException ignored) {
+                        // Fall back to the default delay
+                    }
+                }
+            }
+        }
+        return DEFAULT_RETRY_DELAY;
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        containers.forEach(SimpleMessageListenerContainer::stop);
+        connectionFactory.destroy();
+        channel.shutdown().awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
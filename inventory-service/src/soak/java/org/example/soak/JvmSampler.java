@@ -0,0 +1,81 @@
+package org.example.soak;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+
+/**
+ * Heap and GC figures per interval. Heap after the last collection of the old generation
+ * is the figure to watch over a soak: if it keeps climbing, something is retained.
+ * The application, engine stand-in and load share one JVM, so these include the harness.
+ */
+final class JvmSampler {
+
+    private static final double MB = 1024 * 1024;
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+    private final com.sun.management.OperatingSystemMXBean os =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    private long lastGcCount;
+    private long lastGcMillis;
+
+    JvmSampler() {
+        sample(0);
+    }
+
+    /**
+     * @param seconds length of the interval, used for the share of time spent in GC
+     */
+    Sample sample(double seconds) {
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+
+        // Pools that support collection usage report it for the last GC that covered them
+        long afterGc = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null && isOldGeneration(pool.getName())) {
+                afterGc += usage.getUsed();
+            }
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        Sample sample = new Sample(
+                heap.getUsed() / MB,
+                heap.getCommitted() / MB,
+                afterGc / MB,
+                gcCount - lastGcCount,
+                gcMillis - lastGcMillis,
+                seconds > 0 ? (gcMillis - lastGcMillis) / (seconds * 1000) : 0,
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                Math.max(0, os.getProcessCpuLoad()));
+        lastGcCount = gcCount;
+        lastGcMillis = gcMillis;
+        return sample;
+    }
+
+    private static boolean isOldGeneration(String poolName) {
+        return poolName.contains("Old") || poolName.contains("Tenured") || poolName.equals("ZHeap")
+                || poolName.equals("ZGC Old Generation") || poolName.equals("Shenandoah");
+    }
+
+    /**
+     * @param oldGenAfterGcMb old generation occupancy after its last collection, 0 until one happened
+     * @param gcShare         share of the interval's wall time spent in collections
+     * @param processCpu      process CPU load across all cores, 0 to 1
+     */
+    record Sample(double heapUsedMb, double heapCommittedMb, double oldGenAfterGcMb,
+                  long gcCount, long gcMillis, double gcShare, int threads, double processCpu) {
+    }
+}
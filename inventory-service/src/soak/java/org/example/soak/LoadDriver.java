@@ -0,0 +1,303 @@
+package org.example.soak;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent dashboard users, one virtual thread each, so thousands of them cost little.
+ * Each user repeatedly picks an operation by weight, runs it against the HTTP API and
+ * pauses for a random think time (exponential around the configured mean).
+ */
+final class LoadDriver implements AutoCloseable {
+
+    enum Operation {
+        /** Dashboard snapshot, re-sent with If-None-Match as the dashboard does. */
+        SNAPSHOT,
+        STOCKS,
+        SHIPMENTS,
+        /**
+         * Receives a supply, triggers its calculation and long-polls it until it is done, as
+         * the Calculate button does. A processed supply cannot be calculated again. A share of
+         * the supplies ({@code --large-supplies}) is large enough for the LARGE size class.
+         */
+        CALCULATE,
+        /** Password login; runs BCrypt on the hashing pool. */
+        LOGIN
+    }
+
+    static final String CALCULATION = "calculation.completed";
+    static final String CALCULATION_LARGE = CALCULATION + ".large";
+    static final String SUPPLY_CREATE = "supply.create";
+    static final String STORM_SUFFIX = "@storm";
+    static final int LARGE_SUPPLY_UNITS = 20_000;
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration CALCULATION_TIMEOUT = Duration.ofMinutes(5);
+
+    private final SoakEnvironment environment;
+    private final SoakOptions options;
+    private final OperationStats stats;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient http;
+    private final ExecutorService users = Executors.newVirtualThreadPerTaskExecutor();
+    private final Operation[] weighted;
+    private volatile String phaseSuffix = "";
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final String baseUrl;
+    private volatile boolean running = true;
+
+    LoadDriver(SoakEnvironment environment, SoakOptions options, OperationStats stats) {
+        this.environment = environment;
+        this.options = options;
+        this.stats = stats;
+        this.baseUrl = "http://localhost:" + environment.httpPort();
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(users)
+                .build();
+        this.weighted = weighted(options.mix());
+    }
+
+    private static Operation[] weighted(Map<Operation, Integer> mix) {
+        return mix.entrySet().stream()
+                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
+                .toArray(Operation[]::new);
+    }
+
+    /**
+     * Adds {@code --storm-users} users running the {@code --storm} mix next to the others;
+     * operations from now on are reported with {@link #STORM_SUFFIX}. Calculation
+     * completions and supply creation keep their names, as they span both phases.
+     */
+    void startStorm() {
+        phaseSuffix = STORM_SUFFIX;
+        startUsers(options.stormUsers(), weighted(options.storm()), options.users());
+    }
+
+    void start() {
+        startUsers(options.users(), weighted, 0);
+    }
+
+    private void startUsers(int count, Operation[] mix, long firstSeed) {
+        // Tokens first: issuing one reads the user, which would queue behind running users for a connection
+        List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tokens.add(environment.issueToken());
+        }
+        for (int i = 0; i < count; i++) {
+            String token = tokens.get(i);
+            long seed = firstSeed + i;
+            users.execute(() -> runUser(token, mix, new SplittableRandom(seed)));
+        }
+    }
+
+    private void runUser(String token, Operation[] mix, SplittableRandom random) {
+        String snapshotEtag = null;
+        long thinkMillis = options.thinkTime().toMillis();
+        // Spread the first requests over one think time instead of starting all users at once
+        pause(thinkMillis > 0 ? random.nextLong(thinkMillis) : 0);
+
+        while (running) {
+            Operation operation = mix[random.nextInt(mix.length)];
+            String name = operation.name().toLowerCase() + phaseSuffix;
+            long start = System.nanoTime();
+            try {
+                switch (operation) {
+                    case SNAPSHOT -> snapshotEtag = snapshot(token, snapshotEtag, name, start);
+                    case STOCKS -> get(token, "/api/inventory/stocks?limit=50", name, start);
+                    case SHIPMENTS -> get(token, "/api/v1/distribution/shipments?limit=50", name, start);
+                    case CALCULATE -> calculate(token, random, name);
+                    case LOGIN -> login(name, start);
+                }
+            } catch (IOException e) {
+                stats.failure(name, System.nanoTime() - start, e.getClass().getSimpleName());
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (thinkMillis > 0) {
+                pause((long) (-Math.log(1 - random.nextDouble()) * thinkMillis));
+            }
+        }
+    }
+
+    private String snapshot(String token, String etag, String name, long start)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = authorized(token, "/api/dashboard/snapshot").GET();
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        HttpResponse<String> response = send(request.build(), HttpResponse.BodyHandlers.ofString());
+        record(name, start, response);
+        return response.headers().firstValue("ETag").orElse(etag);
+    }
+
+    private void get(String token, String path, String name, long start) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(authorized(token, path).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        record(name, start, response);
+    }
+
+    private void calculate(String token, SplittableRandom random, String name)
+            throws IOException, InterruptedException {
+        boolean large = random.nextDouble() < options.largeSupplies();
+        Long supplyId = createSupply(token, random, large ? LARGE_SUPPLY_UNITS : 1 + random.nextInt(10));
+        if (supplyId == null) {
+            return;
+        }
+        String completed = large ? CALCULATION_LARGE : CALCULATION;
+
+        long start = System.nanoTime();
+        String body = objectMapper.writeValueAsString(Map.of("supplyId", supplyId));
+        HttpResponse<String> triggered = send(authorized(token, "/api/v1/distribution/calculate")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (!record(name, start, triggered)) {
+            return;
+        }
+
+        String requestId = objectMapper.readTree(triggered.body()).path("request_id").asText();
+        long deadline = start + CALCULATION_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            HttpResponse<String> polled = send(
+                    authorized(token, "/api/v1/distribution/calculate/" + requestId + "?wait=30s").GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (polled.statusCode() != 200) {
+                stats.failure(completed, System.nanoTime() - start, String.valueOf(polled.statusCode()));
+                return;
+            }
+            JsonNode status = objectMapper.readTree(polled.body());
+            switch (status.path("status").asText()) {
+                case "DONE" -> {
+                    stats.success(completed, System.nanoTime() - start);
+                    return;
+                }
+                case "FAILED" -> {
+                    stats.failure(completed, System.nanoTime() - start, "FAILED");
+                    return;
+                }
+                default -> {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+        }
+        stats.failure(completed, System.nanoTime() - start, "timeout");
+    }
+
+    /**
+     * @return the new supply's ID, or null if it could not be created
+     */
+    private Long createSupply(String token, SplittableRandom random, int quantity)
+            throws IOException, InterruptedException {
+        List<Long> warehouseIds = environment.warehouseIds();
+        List<Long> productIds = environment.productIds();
+        String body = objectMapper.writeValueAsString(Map.of(
+                "warehouseId", warehouseIds.get(random.nextInt(warehouseIds.size())),
+                "productId", productIds.get(random.nextInt(productIds.size())),
+                "quantity", quantity));
+        long start = System.nanoTime();
+        HttpResponse<String> created = send(authorized(token, "/api/admin/supplies")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (!record(SUPPLY_CREATE, start, created)) {
+            return null;
+        }
+        // "Supply created with ID: 42"
+        String text = created.body();
+        return Long.valueOf(text.substring(text.lastIndexOf(' ') + 1).trim());
+    }
+
+    private void login(String name, long start) throws IOException, InterruptedException {
+        String body = objectMapper.writeValueAsString(
+                Map.of("username", SoakEnvironment.USERNAME, "password", SoakEnvironment.PASSWORD));
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                        .timeout(REQUEST_TIMEOUT)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        record(name, start, response);
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            return http.send(request, handler);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the most requests outstanding at once since the previous call
+     */
+    int takePeakInFlight() {
+        return peakInFlight.getAndSet(inFlight.get());
+    }
+
+    private HttpRequest.Builder authorized(String token, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", "Bearer " + token);
+    }
+
+    /**
+     * @return whether the response was a success (2xx, or 304 to a conditional request)
+     */
+    private boolean record(String name, long start, HttpResponse<?> response) {
+        long nanos = System.nanoTime() - start;
+        int status = response.statusCode();
+        boolean ok = status / 100 == 2 || status == 304;
+        if (ok) {
+            stats.success(name, nanos);
+        } else {
+            stats.failure(name, nanos, String.valueOf(status));
+        }
+        return ok;
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        users.shutdown();
+        // Users parked in a long-poll finish within its wait
+        if (!users.awaitTermination(45, TimeUnit.SECONDS)) {
+            users.shutdownNow();
+        }
+    }
+}
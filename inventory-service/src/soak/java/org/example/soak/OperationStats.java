@@ -0,0 +1,116 @@
+package org.example.soak;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and errors per operation name. Recording is lock-free; {@link #interval}
+ * takes what was recorded since the previous call and, once counting, adds it to the totals.
+ */
+final class OperationStats {
+
+    // Up to an hour at microsecond precision with 3 significant digits
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+    void success(String name, long nanos) {
+        operation(name).recorder.recordValue(micros(nanos));
+    }
+
+    /**
+     * @param cause HTTP status, gRPC status code or exception class, used to group errors in the report
+     */
+    void failure(String name, long nanos, String cause) {
+        Operation operation = operation(name);
+        operation.recorder.recordValue(micros(nanos));
+        operation.intervalErrors.computeIfAbsent(cause, c -> new LongAdder()).increment();
+    }
+
+    /**
+     * @param counting whether the interval is past the warmup and belongs in the totals
+     */
+    Map<String, Summary> interval(double seconds, boolean counting) {
+        Map<String, Summary> summaries = new TreeMap<>();
+        operations.forEach((name, operation) -> {
+            operation.intervalHistogram = operation.recorder.getIntervalHistogram(operation.intervalHistogram);
+            Map<String, Long> errors = drain(operation.intervalErrors);
+            if (counting) {
+                operation.total.add(operation.intervalHistogram);
+                errors.forEach((cause, count) -> operation.totalErrors.merge(cause, count, Long::sum));
+            }
+            summaries.put(name, Summary.of(operation.intervalHistogram, errors, seconds));
+        });
+        return summaries;
+    }
+
+    Map<String, Summary> totals(double seconds) {
+        Map<String, Summary> summaries = new TreeMap<>();
+        operations.forEach((name, operation) -> summaries.put(name,
+                Summary.of(operation.total, new TreeMap<>(operation.totalErrors), seconds)));
+        return summaries;
+    }
+
+    private Operation operation(String name) {
+        Operation operation = operations.get(name);
+        return operation != null ? operation : operations.computeIfAbsent(name, n -> new Operation());
+    }
+
+    private static long micros(long nanos) {
+        return Math.min(Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos)), HIGHEST_TRACKABLE_MICROS);
+    }
+
+    private static Map<String, Long> drain(Map<String, LongAdder> errors) {
+        Map<String, Long> drained = new TreeMap<>();
+        errors.forEach((cause, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                drained.put(cause, count);
+            }
+        });
+        return drained;
+    }
+
+    private static final class Operation {
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        private final Map<String, LongAdder> intervalErrors = new ConcurrentHashMap<>();
+        private final Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        private final Map<String, Long> totalErrors = new LinkedHashMap<>();
+        // Reused between intervals, only touched by the reporting thread
+        private Histogram intervalHistogram;
+    }
+
+    /**
+     * Latencies in milliseconds. Errors are included in the count and the latencies.
+     */
+    record Summary(long count, long errors, double errorRate, double throughput,
+                   double p50, double p90, double p99, double p999, double max,
+                   Map<String, Long> errorsByCause) {
+
+        static Summary of(Histogram histogram, Map<String, Long> errorsByCause, double seconds) {
+            long count = histogram.getTotalCount();
+            long errors = errorsByCause.values().stream().mapToLong(Long::longValue).sum();
+            return new Summary(count, errors,
+                    count > 0 ? (double) errors / count : 0,
+                    seconds > 0 ? count / seconds : 0,
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()),
+                    errorsByCause);
+        }
+
+        private static double millis(long micros) {
+            return micros / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.example.soak;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.example.InventoryApplication;
+import org.example.config.CalculationPartitions;
+import org.example.config.JwtTokenProvider;
+import org.example.service.CapacityLedger;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The service as deployed, minus the external processes: the application with its real
+ * HTTP and gRPC servers, backed by an embedded PostgreSQL with the Liquibase schema and
+ * the embedded broker, seeded with warehouses and products. Supplies are received by the
+ * load itself, one per calculation.
+ */
+final class SoakEnvironment implements AutoCloseable {
+
+    static final String USERNAME = "admin";
+    static final String PASSWORD = "soak-password";
+
+    private final EmbeddedPostgres postgres;
+    private final EmbeddedBroker broker;
+    private final ConfigurableApplicationContext context;
+    private final int grpcPort;
+
+    private List<Long> warehouseIds = List.of();
+    private List<Long> productIds = List.of();
+
+    private SoakEnvironment(EmbeddedPostgres postgres, EmbeddedBroker broker,
+                            ConfigurableApplicationContext context, int grpcPort) {
+        this.postgres = postgres;
+        this.broker = broker;
+        this.context = context;
+        this.grpcPort = grpcPort;
+    }
+
+    static SoakEnvironment start(List<String> applicationArgs) {
+        EmbeddedPostgres postgres;
+        try {
+            postgres = EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start embedded PostgreSQL", e);
+        }
+        EmbeddedBroker broker = EmbeddedBroker.start(freePort());
+        int grpcPort = freePort();
+
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", postgres.getJdbcUrl("postgres", "postgres"));
+        properties.put("spring.datasource.username", "postgres");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.rabbitmq.host", "localhost");
+        properties.put("spring.rabbitmq.port", String.valueOf(broker.port()));
+        properties.put("spring.rabbitmq.username", "guest");
+        properties.put("spring.rabbitmq.password", "guest");
+        properties.put("server.port", "0");
+        properties.put("grpc.server.port", String.valueOf(grpcPort));
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.org.example.soak", "INFO");
+        // Replaced rather than repeated: Spring joins a repeated argument's values with commas
+        for (String arg : applicationArgs) {
+            int eq = arg.indexOf('=');
+            properties.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        ConfigurableApplicationContext context;
+        try {
+            // Passed as arguments so that they take precedence over application.yaml
+            context = new SpringApplicationBuilder(InventoryApplication.class).run(properties.entrySet().stream()
+                    .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                    .toArray(String[]::new));
+        } catch (RuntimeException e) {
+            broker.close();
+            try {
+                postgres.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        return new SoakEnvironment(postgres, broker, context, grpcPort);
+    }
+
+    void seed(int warehouses, int products) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        jdbc.update("UPDATE users SET password_hash = ? WHERE username = ?",
+                context.getBean(PasswordEncoder.class).encode(PASSWORD), USERNAME);
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < warehouses; i++) {
+            rows.add(new Object[]{10_000.0});
+        }
+        jdbc.batchUpdate("INSERT INTO warehouses (total_capacity, created_by) VALUES (?, 'soak')", rows);
+        warehouseIds = jdbc.queryForList("SELECT id FROM warehouses ORDER BY id", Long.class);
+
+        rows.clear();
+        for (int i = 0; i < products; i++) {
+            rows.add(new Object[]{0.01 + (i % 100) / 1000.0});
+        }
+        jdbc.batchUpdate("INSERT INTO products (volume_m3, created_by) VALUES (?, 'soak')", rows);
+        productIds = jdbc.queryForList("SELECT id FROM products ORDER BY id", Long.class);
+
+        // The ledger was seeded at startup, before these rows existed
+        context.getBean(CapacityLedger.class).reconcile();
+    }
+
+    /**
+     * A token for the seeded admin, issued directly so that starting thousands of users
+     * does not queue them all behind password hashing.
+     */
+    String issueToken() {
+        UserDetails user = context.getBean(UserDetailsService.class).loadUserByUsername(USERNAME);
+        return context.getBean(JwtTokenProvider.class).generateToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    int httpPort() {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    int grpcPort() {
+        return grpcPort;
+    }
+
+    int amqpPort() {
+        return broker.port();
+    }
+
+    List<Long> warehouseIds() {
+        return warehouseIds;
+    }
+
+    List<Long> productIds() {
+        return productIds;
+    }
+
+    CalculationPartitions calculationPartitions() {
+        return context.getBean(CalculationPartitions.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            context.close();
+        } finally {
+            try {
+                broker.close();
+            } finally {
+                postgres.close();
+            }
+        }
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.example.soak;
+
+import org.example.dto.SizeClass;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options of a soak run, given as {@code --name=value}. Durations take the Spring forms
+ * ({@code 90s}, {@code 2h}, {@code PT30M}; plain numbers are seconds). Any other
+ * {@code --key=value} is handed to the application, e.g.
+ * {@code --spring.threads.virtual.enabled=true} or {@code --inventory.plan-apply.mode=async}.
+ * <p>
+ * {@code --storm} starts {@code --storm-users} more users on that mix for the second half of
+ * the measured run, e.g. {@code --storm=login:1 --storm-users=200} for a login storm;
+ * operations in that half are reported with an {@code @storm} suffix. With
+ * {@code --max-storm-slowdown=2} the run fails when an operation's p99 in the storm exceeds
+ * twice its p99 before it (the storm's own operations are not compared).
+ */
+record SoakOptions(
+        int users,
+        Duration duration,
+        Duration warmup,
+        Duration reportInterval,
+        Duration thinkTime,
+        Map<LoadDriver.Operation, Integer> mix,
+        Map<LoadDriver.Operation, Integer> storm,
+        int stormUsers,
+        double maxStormSlowdown,
+        int warehouses,
+        int products,
+        double largeSupplies,
+        int planMoves,
+        int planUnallocated,
+        int engineWorkers,
+        Duration engineDelay,
+        int largeDelayFactor,
+        Map<SizeClass, Integer> laneWeights,
+        double maxErrorRate,
+        Path report,
+        List<String> applicationArgs) {
+
+    private static final Map<LoadDriver.Operation, Integer> DEFAULT_MIX = Map.of(
+            LoadDriver.Operation.SNAPSHOT, 50,
+            LoadDriver.Operation.STOCKS, 20,
+            LoadDriver.Operation.SHIPMENTS, 20,
+            LoadDriver.Operation.CALCULATE, 8,
+            LoadDriver.Operation.LOGIN, 2);
+
+    static SoakOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq);
+            // Dotted names are application properties
+            if (name.contains(".")) {
+                applicationArgs.add(arg);
+            } else {
+                values.put(name, arg.substring(eq + 1));
+            }
+        }
+
+        SoakOptions options = new SoakOptions(
+                intValue(values, "users", 50),
+                duration(values, "duration", "10m"),
+                duration(values, "warmup", "1m"),
+                duration(values, "report-interval", "30s"),
+                duration(values, "think-time", "500ms"),
+                mix(values.remove("mix")),
+                values.containsKey("storm") ? mix(values.remove("storm")) : Map.of(),
+                intValue(values, "storm-users", 100),
+                Double.parseDouble(value(values, "max-storm-slowdown", "0")),
+                intValue(values, "warehouses", 100),
+                intValue(values, "products", 500),
+                Double.parseDouble(value(values, "large-supplies", "0")),
+                intValue(values, "plan-moves", 500),
+                intValue(values, "plan-unallocated", 0),
+                intValue(values, "engine-workers", 4),
+                duration(values, "engine-delay", "0s"),
+                intValue(values, "large-delay-factor", 10),
+                laneWeights(value(values, "lane-weights", "small:2,medium:1,large:1")),
+                Double.parseDouble(value(values, "max-error-rate", "1")),
+                Path.of(value(values, "report", "soak-report.json")),
+                List.copyOf(applicationArgs));
+
+        if (options.largeSupplies < 0 || options.largeSupplies > 1 || options.largeDelayFactor < 1) {
+            throw new IllegalArgumentException("large-supplies must be between 0 and 1, large-delay-factor at least 1");
+        }
+        if (options.maxStormSlowdown < 0 || (options.maxStormSlowdown > 0 && options.storm.isEmpty())) {
+            throw new IllegalArgumentException("max-storm-slowdown must be positive and needs --storm");
+        }
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown soak options: " + values.keySet());
+        }
+        if (options.users < 1 || options.stormUsers < 1 || options.engineWorkers < 1
+                || options.warehouses < 2 || options.products < 1) {
+            throw new IllegalArgumentException("users, storm-users, engine-workers and products must be at least 1, "
+                    + "warehouses at least 2");
+        }
+        return options;
+    }
+
+    private static String value(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static int intValue(Map<String, String> values, String name, int defaultValue) {
+        return Integer.parseInt(value(values, name, String.valueOf(defaultValue)));
+    }
+
+    private static Duration duration(Map<String, String> values, String name, String defaultValue) {
+        return DurationStyle.detectAndParse(value(values, name, defaultValue), ChronoUnit.SECONDS);
+    }
+
+    /**
+     * @param spec worker weights per size class lane such as {@code small:2,medium:1,large:1}
+     */
+    private static Map<SizeClass, Integer> laneWeights(String spec) {
+        Map<SizeClass, Integer> weights = new EnumMap<>(SizeClass.class);
+        for (String part : spec.split(",")) {
+            String[] weight = part.split(":");
+            if (weight.length != 2 || Integer.parseInt(weight[1].trim()) < 1) {
+                throw new IllegalArgumentException("Expected lane:weight with a positive weight in --lane-weights, got " + part);
+            }
+            weights.put(SizeClass.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        for (SizeClass sizeClass : SizeClass.values()) {
+            weights.putIfAbsent(sizeClass, 1);
+        }
+        return weights;
+    }
+
+    /**
+     * @param spec weights such as {@code snapshot:60,calculate:10,login:30}; unlisted operations get 0
+     */
+    private static Map<LoadDriver.Operation, Integer> mix(String spec) {
+        if (spec == null) {
+            return DEFAULT_MIX;
+        }
+        Map<LoadDriver.Operation, Integer> mix = new EnumMap<>(LoadDriver.Operation.class);
+        for (String part : spec.split(",")) {
+            String[] weight = part.split(":");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in --mix, got " + part);
+            }
+            mix.put(LoadDriver.Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("--mix needs at least one positive weight");
+        }
+        return mix;
+    }
+}
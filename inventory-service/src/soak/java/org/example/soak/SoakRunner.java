@@ -0,0 +1,205 @@
+package org.example.soak;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a load or soak test of the service in one JVM: embedded PostgreSQL and broker,
+ * the application, a stand-in engine and concurrent HTTP users. Every report interval it
+ * logs throughput, latency percentiles and errors per operation together with heap and
+ * GC figures; at the end it writes the whole run as JSON. Intervals inside the warmup
+ * are logged but left out of the totals.
+ * <p>
+ * Exits with status 1 when an operation's error rate over the run exceeds {@code --max-error-rate},
+ * or when an operation slows down in the {@code --storm} half beyond {@code --max-storm-slowdown}.
+ *
+ * @see SoakOptions
+ */
+@Slf4j
+public final class SoakRunner {
+
+    private SoakRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        SoakOptions options = SoakOptions.parse(args);
+        OperationStats stats = new OperationStats();
+        JvmSampler jvm = new JvmSampler();
+        List<Interval> intervals = new ArrayList<>();
+        Map<String, OperationStats.Summary> totals;
+
+        Instant startedAt = Instant.now();
+        try (SoakEnvironment environment = SoakEnvironment.start(options.applicationArgs())) {
+            environment.seed(options.warehouses(), options.products());
+            log.info("Soak environment up: HTTP {}, gRPC {}, AMQP {}; {} users for {} ({} warmup)",
+                    environment.httpPort(), environment.grpcPort(), environment.amqpPort(),
+                    options.users(), options.duration(), options.warmup());
+
+            try (FakeEngine engine = new FakeEngine(environment, options, stats);
+                 LoadDriver driver = new LoadDriver(environment, options, stats)) {
+                engine.start();
+                driver.start();
+                totals = run(options, stats, jvm, intervals, driver);
+            }
+        }
+
+        Report report = new Report(startedAt, Instant.now(), options,
+                Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / (1024 * 1024),
+                Runtime.version().toString(), totals, oldGenGrowthMbPerHour(intervals), intervals);
+        write(options.report(), report);
+
+        List<String> failing = totals.entrySet().stream()
+                .filter(entry -> entry.getValue().errorRate() > options.maxErrorRate())
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!failing.isEmpty()) {
+            log.error("Error rate above {} for {}", options.maxErrorRate(), failing);
+        }
+        List<String> slowed = stormSlowdowns(options, totals);
+        if (!slowed.isEmpty()) {
+            log.error("p99 in the storm above {}x the p99 before it for {}", options.maxStormSlowdown(), slowed);
+        }
+        System.exit(failing.isEmpty() && slowed.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Logs each operation's p99 before and during the storm.
+     *
+     * @return operations whose p99 grew beyond {@code --max-storm-slowdown}, none if not set
+     */
+    private static List<String> stormSlowdowns(SoakOptions options, Map<String, OperationStats.Summary> totals) {
+        List<String> slowed = new ArrayList<>();
+        totals.forEach((name, during) -> {
+            if (!name.endsWith(LoadDriver.STORM_SUFFIX)) {
+                return;
+            }
+            String operation = name.substring(0, name.length() - LoadDriver.STORM_SUFFIX.length());
+            OperationStats.Summary before = totals.get(operation);
+            if (before == null || options.storm().containsKey(LoadDriver.Operation.valueOf(operation.toUpperCase()))) {
+                return;
+            }
+            double slowdown = before.p99() > 0 ? during.p99() / before.p99() : 0;
+            log.info("Storm {}: p99 {} ms before, {} ms during ({}x)", operation,
+                    before.p99(), during.p99(), String.format("%.2f", slowdown));
+            if (options.maxStormSlowdown() > 0 && slowdown > options.maxStormSlowdown()) {
+                slowed.add(operation);
+            }
+        });
+        return slowed;
+    }
+
+    private static Map<String, OperationStats.Summary> run(SoakOptions options, OperationStats stats,
+                                                          JvmSampler jvm, List<Interval> intervals,
+                                                          LoadDriver driver)
+            throws InterruptedException {
+        long startNanos = System.nanoTime();
+        long warmupEnd = startNanos + options.warmup().toNanos();
+        long end = warmupEnd + options.duration().toNanos();
+        // The storm takes the second half of the measured run
+        long stormStart = options.storm().isEmpty() ? end : warmupEnd + options.duration().toNanos() / 2;
+        long intervalNanos = options.reportInterval().toNanos();
+        long measuredNanos = 0;
+
+        long previous = startNanos;
+        boolean stormStarted = false;
+        while (previous < end) {
+            // An interval never straddles the end of the warmup or the start of the storm
+            long next = Math.min(previous + intervalNanos,
+                    previous < warmupEnd ? warmupEnd : previous < stormStart ? stormStart : end);
+            Thread.sleep(Duration.ofNanos(Math.max(0, next - System.nanoTime())));
+            long now = System.nanoTime();
+            double seconds = (now - previous) / 1e9;
+
+            boolean counting = previous >= warmupEnd;
+            if (counting) {
+                measuredNanos += now - previous;
+            }
+            Interval interval = new Interval(Duration.ofNanos(now - startNanos).toSeconds(), !counting,
+                    driver.takePeakInFlight(), stats.interval(seconds, counting), jvm.sample(seconds));
+            intervals.add(interval);
+            print(interval);
+            previous = now;
+            if (!stormStarted && stormStart < end && now >= stormStart) {
+                driver.startStorm();
+                stormStarted = true;
+                log.info("Storm started: {}", options.storm());
+            }
+        }
+        return stats.totals(measuredNanos / 1e9);
+    }
+
+    private static void print(Interval interval) {
+        StringBuilder line = new StringBuilder(String.format("%n[%6ds]%s, up to %d requests in flight%n",
+                interval.elapsedSeconds(), interval.warmup() ? " warmup" : "", interval.peakInFlight()));
+        line.append(String.format("  %-28s %9s %8s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        interval.operations().forEach((name, s) -> line.append(String.format(
+                "  %-28s %9d %8d %9.1f %9.1f %9.1f %9.1f %9.1f%s%n",
+                name, s.count(), s.errors(), s.throughput(), s.p50(), s.p99(), s.p999(), s.max(),
+                s.errorsByCause().isEmpty() ? "" : "  " + s.errorsByCause())));
+        JvmSampler.Sample jvm = interval.jvm();
+        line.append(String.format(
+                "  heap %.0f/%.0f MB, old gen after GC %.0f MB, %d GCs %d ms (%.1f%%), %d threads, cpu %.0f%%",
+                jvm.heapUsedMb(), jvm.heapCommittedMb(), jvm.oldGenAfterGcMb(), jvm.gcCount(), jvm.gcMillis(),
+                jvm.gcShare() * 100, jvm.threads(), jvm.processCpu() * 100));
+        log.info(line.toString());
+    }
+
+    /**
+     * Least-squares slope of old generation occupancy after GC over the measured intervals;
+     * a steady positive slope over a long run points at a leak.
+     */
+    private static Double oldGenGrowthMbPerHour(List<Interval> intervals) {
+        List<Interval> measured = intervals.stream()
+                .filter(interval -> !interval.warmup() && interval.jvm().oldGenAfterGcMb() > 0)
+                .toList();
+        if (measured.size() < 2) {
+            return null;
+        }
+        double meanX = measured.stream().mapToDouble(Interval::elapsedSeconds).average().orElse(0);
+        double meanY = measured.stream().mapToDouble(i -> i.jvm().oldGenAfterGcMb()).average().orElse(0);
+        double covariance = 0;
+        double variance = 0;
+        for (Interval interval : measured) {
+            double dx = interval.elapsedSeconds() - meanX;
+            covariance += dx * (interval.jvm().oldGenAfterGcMb() - meanY);
+            variance += dx * dx;
+        }
+        return variance > 0 ? covariance / variance * 3600 : null;
+    }
+
+    private static void write(Path path, Report report) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(path.toFile(), report);
+        log.info("Soak report written to {}", path.toAbsolutePath());
+    }
+
+    /**
+     * @param peakInFlight most HTTP requests the users had outstanding at once
+     */
+    record Interval(long elapsedSeconds, boolean warmup, int peakInFlight,
+                    Map<String, OperationStats.Summary> operations, JvmSampler.Sample jvm) {
+    }
+
+    record Report(Instant startedAt, Instant finishedAt, SoakOptions options, int processors, long maxHeapMb,
+                  String javaVersion, Map<String, OperationStats.Summary> totals,
+                  Double oldGenGrowthMbPerHour, List<Interval> intervals) {
+    }
+}